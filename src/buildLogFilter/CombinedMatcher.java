@@ -0,0 +1,809 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a line against a list of regular expressions, using a single
+ * deterministic automaton built from all of them, so that each line can be
+ * classified in one left-to-right scan, without allocating any objects.
+ *
+ * The automaton only supports a subset of the regular expression syntax:
+ * literals, character classes, {@code .}, groups, alternation, and greedy or
+ * reluctant quantifiers, with a leading {@code ^} and trailing {@code $}.
+ * Patterns using any other features, such as flags, boundaries, back
+ * references or non-ASCII literals, are matched with {@link Pattern} instead.
+ *
+ * The result of a match is the index of the first pattern in the list that
+ * matches the entire line, as determined by {@code Matcher.matches()}.
+ *
+ * A matcher may be serialized, so that it can be reused without building
+ * the automaton again. Only the source of each pattern is saved; after
+ * deserialization, only the patterns that are not handled by the automaton
+ * are compiled eagerly.
+ */
+class CombinedMatcher implements Serializable {
+    static final long serialVersionUID = 4061592848374458163L;
+
+    /**
+     * Create a matcher for a list of patterns.
+     * @param patterns the patterns
+     */
+    CombinedMatcher(List<Pattern> patterns) {
+        this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+        allPatterns = this.patterns;
+        regexes = new String[this.patterns.length];
+        flags = new int[this.patterns.length];
+        for (int i = 0; i < this.patterns.length; i++) {
+            regexes[i] = this.patterns[i].pattern();
+            flags[i] = this.patterns[i].flags();
+        }
+
+        List<Integer> supported = new ArrayList<>();
+        List<Node> trees = new ArrayList<>();
+        for (int i = 0; i < this.patterns.length; i++) {
+            Node n = Parser.parse(this.patterns[i]);
+            if (n != null) {
+                supported.add(i);
+                trees.add(n);
+            }
+        }
+
+        if (!build(supported, trees)) {
+            // too many states: add the patterns one at a time, leaving
+            // any pattern that would make the automaton too big to be
+            // matched with a regular expression instead
+            List<Integer> s = new ArrayList<>();
+            List<Node> t = new ArrayList<>();
+            for (int i = 0; i < supported.size(); i++) {
+                s.add(supported.get(i));
+                t.add(trees.get(i));
+                if (!build(s, t)) {
+                    s.remove(s.size() - 1);
+                    t.remove(t.size() - 1);
+                }
+            }
+            build(s, t);
+            supported = s;
+        }
+
+        boolean[] inAutomaton = new boolean[this.patterns.length];
+        for (int i: supported)
+            inAutomaton[i] = true;
+        List<Integer> f = new ArrayList<>();
+        for (int i = 0; i < this.patterns.length; i++) {
+            if (!inAutomaton[i])
+                f.add(i);
+        }
+        fallback = new int[f.size()];
+        for (int i = 0; i < fallback.length; i++)
+            fallback[i] = f.get(i);
+    }
+
+    /**
+     * Determine whether any of the patterns matches the entire line.
+     * @param line the line
+     * @return true if and only if one of the patterns matches the line
+     */
+    boolean matches(CharSequence line) {
+        return match(line) >= 0;
+    }
+
+    /**
+     * Find the first pattern that matches the entire line.
+     * @param line the line
+     * @return the index of the first pattern to match, or -1 if none match
+     */
+    int match(CharSequence line) {
+        return match(line, 0, line.length());
+    }
+
+    /**
+     * Find the first pattern that matches a line within a sequence of chars.
+     * @param chars the sequence containing the line
+     * @param start the index of the first char in the line
+     * @param end the index after the last char in the line
+     * @return the index of the first pattern to match, or -1 if none match
+     */
+    int match(CharSequence chars, int start, int end) {
+        int s = START;
+        for (int i = start; i < end && s != DEAD; i++) {
+            char c = chars.charAt(i);
+            int sym;
+            if (c < ASCII)
+                sym = c;
+            else if (Character.isSurrogate(c))
+                return matchAll(chars.subSequence(start, end));
+            else if (c == '\u0085' || c == '\u2028' || c == '\u2029')
+                sym = LINE_TERM;
+            else
+                sym = OTHER;
+            s = next[s * NSYMS + sym];
+        }
+        int found = accept[s];
+        if (fallback.length == 0 || found >= 0 && fallback[0] > found)
+            return found;
+        return matchFallback(chars.subSequence(start, end), found);
+    }
+
+    /**
+     * Find the first pattern that matches a line of bytes within a buffer,
+     * without decoding the bytes. Only lines containing just ASCII bytes
+     * can be matched in this way; for any other line, the result will be
+     * {@link #UNDECIDED}, and the line should be decoded and matched as chars.
+     * The result will also be {@code UNDECIDED} if the line may match a
+     * pattern that is not handled by the automaton.
+     * @param bytes the buffer containing the line
+     * @param start the index of the first byte in the line
+     * @param end the index after the last byte in the line
+     * @return the index of the first pattern to match, -1 if none match,
+     *      or {@code UNDECIDED}
+     */
+    int match(ByteBuffer bytes, int start, int end) {
+        int s = START;
+        for (int i = start; i < end && s != DEAD; i++) {
+            byte b = bytes.get(i);
+            if (b < 0)
+                return UNDECIDED;
+            s = next[s * NSYMS + b];
+        }
+        int found = accept[s];
+        if (fallback.length == 0 || found >= 0 && fallback[0] > found)
+            return found;
+        return UNDECIDED;
+    }
+
+    /**
+     * Combine the result from the automaton with the patterns that are not
+     * handled by the automaton, preserving the order of the patterns.
+     */
+    private int matchFallback(CharSequence line, int found) {
+        for (int i: fallback) {
+            if (found >= 0 && i > found)
+                break;
+            if (patterns[i].matcher(line).matches())
+                return i;
+        }
+        return found;
+    }
+
+    /**
+     * Match all the patterns with regular expressions, for content that
+     * cannot be represented in the automaton, such as supplementary chars.
+     */
+    private int matchAll(CharSequence line) {
+        Pattern[] all = getAllPatterns();
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].matcher(line).matches())
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first pattern that matches the entire line, matching each
+     * pattern in turn with its regular expression, and recording the time
+     * spent on each pattern. The time spent in the automaton cannot be
+     * attributed to individual patterns, so this method does not use it;
+     * the times indicate the relative cost of the patterns.
+     * @param line the line
+     * @param nanos an array in which to accumulate the time, in nanoseconds,
+     *      spent matching each pattern
+     * @return the index of the first pattern to match, or -1 if none match
+     */
+    int matchTimed(CharSequence line, long[] nanos) {
+        Pattern[] all = getAllPatterns();
+        for (int i = 0; i < all.length; i++) {
+            long start = System.nanoTime();
+            boolean m = all[i].matcher(line).matches();
+            nanos[i] += System.nanoTime() - start;
+            if (m)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of patterns.
+     * @return the number of patterns
+     */
+    int size() {
+        return regexes.length;
+    }
+
+    /**
+     * Get the source of a pattern.
+     * @param i the index of the pattern
+     * @return the source of the pattern
+     */
+    String getPattern(int i) {
+        return regexes[i];
+    }
+
+    /**
+     * Get all the patterns, compiling any that have not yet been compiled
+     * after deserialization.
+     */
+    private Pattern[] getAllPatterns() {
+        Pattern[] all = allPatterns;
+        if (all == null) {
+            synchronized (this) {
+                all = allPatterns;
+                if (all == null) {
+                    all = new Pattern[regexes.length];
+                    for (int i = 0; i < all.length; i++) {
+                        all[i] = (patterns[i] != null)
+                                ? patterns[i] : Pattern.compile(regexes[i], flags[i]);
+                    }
+                    allPatterns = all;
+                }
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Read a matcher, checking that the automaton is consistent with the
+     * patterns, so that a damaged or forged entry is rejected rather than
+     * causing an exception or a wrong result while matching.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (regexes == null || flags == null || fallback == null
+                || next == null || accept == null)
+            throw new InvalidObjectException("missing field");
+        if (flags.length != regexes.length)
+            throw new InvalidObjectException("bad flags");
+        for (String r: regexes) {
+            if (r == null)
+                throw new InvalidObjectException("bad pattern");
+        }
+
+        int nstates = accept.length;
+        if (nstates <= START || nstates > MAX_STATES || next.length != nstates * NSYMS)
+            throw new InvalidObjectException("bad automaton");
+        for (int s: next) {
+            if (s < 0 || s >= nstates)
+                throw new InvalidObjectException("bad automaton");
+        }
+
+        boolean[] isFallback = new boolean[regexes.length];
+        int prev = -1;
+        for (int i: fallback) {
+            if (i <= prev || i >= regexes.length)
+                throw new InvalidObjectException("bad fallback");
+            isFallback[i] = true;
+            prev = i;
+        }
+        for (int a: accept) {
+            if (a < -1 || a >= regexes.length || a >= 0 && isFallback[a])
+                throw new InvalidObjectException("bad automaton");
+        }
+
+        patterns = new Pattern[regexes.length];
+        try {
+            for (int i: fallback)
+                patterns[i] = Pattern.compile(regexes[i], flags[i]);
+        } catch (IllegalArgumentException e) {
+            InvalidObjectException ex = new InvalidObjectException("bad pattern");
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the number of patterns that are matched with regular expressions
+     * instead of the automaton.
+     * @return the number of fallback patterns
+     */
+    int getFallbackCount() {
+        return fallback.length;
+    }
+
+    /**
+     * Build the automaton for the given patterns, using subset construction
+     * on the equivalent NFA.
+     * @return false if the automaton would have too many states
+     */
+    private boolean build(List<Integer> indexes, List<Node> trees) {
+        Nfa nfa = new Nfa();
+        int nfaStart = nfa.newState();
+        for (int i = 0; i < trees.size(); i++) {
+            int[] frag = nfa.build(trees.get(i));
+            nfa.addEpsilon(nfaStart, frag[0]);
+            nfa.accept.set(frag[1], indexes.get(i));
+        }
+
+        Map<BitSet, Integer> stateIndex = new HashMap<>();
+        List<BitSet> states = new ArrayList<>();
+        BitSet dead = new BitSet();
+        stateIndex.put(dead, DEAD);
+        states.add(dead);
+        BitSet start = nfa.closure(singleton(nfaStart));
+        stateIndex.put(start, START);
+        states.add(start);
+
+        List<int[]> rows = new ArrayList<>();
+        for (int d = 0; d < states.size(); d++) {
+            BitSet set = states.get(d);
+            int[] row = new int[NSYMS];
+            for (int sym = 0; sym < NSYMS; sym++) {
+                BitSet target = nfa.closure(nfa.move(set, sym));
+                Integer t = stateIndex.get(target);
+                if (t == null) {
+                    if (states.size() == MAX_STATES)
+                        return false;
+                    t = states.size();
+                    stateIndex.put(target, t);
+                    states.add(target);
+                }
+                row[sym] = t;
+            }
+            rows.add(row);
+        }
+
+        next = new int[rows.size() * NSYMS];
+        accept = new int[rows.size()];
+        for (int d = 0; d < rows.size(); d++) {
+            System.arraycopy(rows.get(d), 0, next, d * NSYMS, NSYMS);
+            int a = -1;
+            BitSet set = states.get(d);
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int pa = nfa.accept.get(s);
+                if (pa >= 0 && (a < 0 || pa < a))
+                    a = pa;
+            }
+            accept[d] = a;
+        }
+        return true;
+    }
+
+    private static BitSet singleton(int i) {
+        BitSet b = new BitSet();
+        b.set(i);
+        return b;
+    }
+
+    /** Symbols 0-127 are the ASCII chars. */
+    static final int ASCII = 128;
+    /** The symbol for any non-ASCII char that is not a line terminator. */
+    static final int OTHER = 128;
+    /** The symbol for a non-ASCII line terminator: U+0085, U+2028, U+2029. */
+    static final int LINE_TERM = 129;
+    /** The number of symbols in the alphabet of the automaton. */
+    static final int NSYMS = 130;
+
+    /** The result of matching bytes when the line must be matched as chars. */
+    static final int UNDECIDED = -2;
+
+    static final int DEAD = 0;
+    static final int START = 1;
+    private static final int MAX_STATES = 4096;
+
+    /** The source and flags of the patterns. */
+    private final String[] regexes;
+    private final int[] flags;
+    /**
+     * The compiled patterns. After deserialization, only the fallback
+     * patterns are compiled eagerly; the rest are compiled on demand.
+     */
+    private transient Pattern[] patterns;
+    /** All the compiled patterns, once they have all been compiled. */
+    private transient volatile Pattern[] allPatterns;
+    private int[] fallback;
+    private int[] next;
+    private int[] accept;
+
+    /**
+     * A node in the syntax tree for a regular expression.
+     * A node is one of: a set of symbols, a sequence, an alternation,
+     * or a repetition.
+     */
+    private static class Node {
+        BitSet set;
+        List<Node> seq;
+        List<Node> alt;
+        Node body;
+        int min;
+        int max;
+    }
+
+    /**
+     * A parser for the supported subset of regular expressions.
+     */
+    private static class Parser {
+        /**
+         * Parse a pattern.
+         * @return the syntax tree, or null if the pattern is not supported
+         */
+        static Node parse(Pattern p) {
+            if (p.flags() != 0)
+                return null;
+            String s = p.pattern();
+            Parser parser = new Parser(s);
+            if (s.startsWith("^"))
+                parser.pos++;
+            if (s.endsWith("$") && !s.endsWith("\\$"))
+                parser.end--;
+            try {
+                Node n = parser.alt();
+                return (parser.pos == parser.end) ? n : null;
+            } catch (Unsupported e) {
+                return null;
+            }
+        }
+
+        private Parser(String s) {
+            this.s = s;
+            this.end = s.length();
+        }
+
+        private Node alt() throws Unsupported {
+            Node n = seq();
+            if (!at('|'))
+                return n;
+            Node a = new Node();
+            a.alt = new ArrayList<>();
+            a.alt.add(n);
+            while (at('|')) {
+                pos++;
+                a.alt.add(seq());
+            }
+            return a;
+        }
+
+        private Node seq() throws Unsupported {
+            Node n = new Node();
+            n.seq = new ArrayList<>();
+            while (pos < end && !at('|') && !at(')'))
+                n.seq.add(quantified(atom()));
+            return n;
+        }
+
+        private Node quantified(Node atom) throws Unsupported {
+            int min, max;
+            if (at('*')) {
+                pos++;
+                min = 0;
+                max = -1;
+            } else if (at('+')) {
+                pos++;
+                min = 1;
+                max = -1;
+            } else if (at('?')) {
+                pos++;
+                min = 0;
+                max = 1;
+            } else if (at('{')) {
+                pos++;
+                min = number();
+                if (at(',')) {
+                    pos++;
+                    max = at('}') ? -1 : number();
+                } else
+                    max = min;
+                expect('}');
+                if (max >= 0 && max < min || max > MAX_REPEAT || min > MAX_REPEAT)
+                    throw new Unsupported();
+            } else
+                return atom;
+
+            // a reluctant quantifier gives the same result as a greedy one
+            // when matching the entire line; a possessive one may not
+            if (at('?'))
+                pos++;
+            else if (at('+'))
+                throw new Unsupported();
+
+            Node n = new Node();
+            n.body = atom;
+            n.min = min;
+            n.max = max;
+            return n;
+        }
+
+        private Node atom() throws Unsupported {
+            char c = s.charAt(pos++);
+            switch (c) {
+                case '(':
+                    if (at('?')) {
+                        pos++;
+                        expect(':');
+                    }
+                    Node n = alt();
+                    expect(')');
+                    return n;
+
+                case '[':
+                    return set(charClass());
+
+                case '.':
+                    BitSet b = new BitSet();
+                    b.set(0, NSYMS);
+                    b.clear('\n');
+                    b.clear('\r');
+                    b.clear(LINE_TERM);
+                    return set(b);
+
+                case '\\':
+                    return set(escape(false));
+
+                case '^': case '$': case '*': case '+': case '?': case '{':
+                    throw new Unsupported();
+
+                default:
+                    return set(literal(c));
+            }
+        }
+
+        private BitSet charClass() throws Unsupported {
+            BitSet b = new BitSet();
+            boolean negate = at('^');
+            if (negate)
+                pos++;
+            if (at(']'))
+                throw new Unsupported();
+            while (!at(']')) {
+                if (pos >= end)
+                    throw new Unsupported();
+                char c = s.charAt(pos++);
+                BitSet item;
+                switch (c) {
+                    case '[': case '&':
+                        throw new Unsupported();
+                    case '\\':
+                        item = escape(true);
+                        break;
+                    default:
+                        item = literal(c);
+                }
+                if (at('-') && pos + 1 < end && s.charAt(pos + 1) != ']') {
+                    pos++;
+                    char hi = s.charAt(pos++);
+                    if (item.cardinality() != 1 || hi == '\\' || hi == '[' || hi >= ASCII)
+                        throw new Unsupported();
+                    int lo = item.nextSetBit(0);
+                    if (hi < lo)
+                        throw new Unsupported();
+                    item.set(lo, hi + 1);
+                }
+                b.or(item);
+            }
+            pos++;
+            if (negate)
+                b.flip(0, NSYMS);
+            return b;
+        }
+
+        private BitSet escape(boolean inClass) throws Unsupported {
+            if (pos >= end)
+                throw new Unsupported();
+            char c = s.charAt(pos++);
+            BitSet b = new BitSet();
+            switch (c) {
+                case 'd': case 'D':
+                    b.set('0', '9' + 1);
+                    break;
+                case 's': case 'S':
+                    b.set(' ');
+                    b.set('\t');
+                    b.set('\n');
+                    b.set(0x0B);
+                    b.set('\f');
+                    b.set('\r');
+                    break;
+                case 'w': case 'W':
+                    b.set('a', 'z' + 1);
+                    b.set('A', 'Z' + 1);
+                    b.set('0', '9' + 1);
+                    b.set('_');
+                    break;
+                case 't':
+                    return literal('\t');
+                case 'n':
+                    return literal('\n');
+                case 'r':
+                    return literal('\r');
+                case 'f':
+                    return literal('\f');
+                case 'a':
+                    return literal('\u0007');
+                case 'e':
+                    return literal('\u001B');
+                default:
+                    if (c >= ASCII || Character.isLetterOrDigit(c))
+                        throw new Unsupported();
+                    return literal(c);
+            }
+            if (Character.isUpperCase(c))
+                b.flip(0, NSYMS);
+            return b;
+        }
+
+        private BitSet literal(char c) throws Unsupported {
+            if (c >= ASCII)
+                throw new Unsupported();
+            BitSet b = new BitSet();
+            b.set(c);
+            return b;
+        }
+
+        private Node set(BitSet b) {
+            Node n = new Node();
+            n.set = b;
+            return n;
+        }
+
+        private int number() throws Unsupported {
+            int start = pos;
+            while (pos < end && Character.isDigit(s.charAt(pos)) && pos - start < 4)
+                pos++;
+            if (pos == start)
+                throw new Unsupported();
+            return Integer.parseInt(s.substring(start, pos));
+        }
+
+        private boolean at(char c) {
+            return pos < end && s.charAt(pos) == c;
+        }
+
+        private void expect(char c) throws Unsupported {
+            if (!at(c))
+                throw new Unsupported();
+            pos++;
+        }
+
+        private static final int MAX_REPEAT = 64;
+
+        private final String s;
+        private int pos;
+        private int end;
+    }
+
+    /** Thrown when a pattern uses a feature not supported by the automaton. */
+    private static class Unsupported extends Exception {
+        static final long serialVersionUID = 3360447146214155213L;
+    }
+
+    /**
+     * A nondeterministic automaton, with transitions on sets of symbols
+     * and epsilon transitions.
+     */
+    private static class Nfa {
+        int newState() {
+            on.add(null);
+            target.add(-1);
+            epsilon.add(new ArrayList<Integer>());
+            accept.add(-1);
+            return on.size() - 1;
+        }
+
+        void addEpsilon(int from, int to) {
+            epsilon.get(from).add(to);
+        }
+
+        /**
+         * Build the states for a syntax tree.
+         * @return the start and end states of the fragment
+         */
+        int[] build(Node n) {
+            if (n.set != null) {
+                int s = newState();
+                int e = newState();
+                on.set(s, n.set);
+                target.set(s, e);
+                return new int[] { s, e };
+            } else if (n.seq != null) {
+                int s = newState();
+                int e = s;
+                for (Node item: n.seq) {
+                    int[] f = build(item);
+                    addEpsilon(e, f[0]);
+                    e = f[1];
+                }
+                return new int[] { s, e };
+            } else if (n.alt != null) {
+                int s = newState();
+                int e = newState();
+                for (Node item: n.alt) {
+                    int[] f = build(item);
+                    addEpsilon(s, f[0]);
+                    addEpsilon(f[1], e);
+                }
+                return new int[] { s, e };
+            } else {
+                int s = newState();
+                int e = s;
+                for (int i = 0; i < n.min; i++) {
+                    int[] f = build(n.body);
+                    addEpsilon(e, f[0]);
+                    e = f[1];
+                }
+                if (n.max < 0) {
+                    int[] f = build(n.body);
+                    int loopEnd = newState();
+                    addEpsilon(e, f[0]);
+                    addEpsilon(e, loopEnd);
+                    addEpsilon(f[1], f[0]);
+                    addEpsilon(f[1], loopEnd);
+                    e = loopEnd;
+                } else {
+                    int optEnd = newState();
+                    for (int i = n.min; i < n.max; i++) {
+                        int[] f = build(n.body);
+                        addEpsilon(e, f[0]);
+                        addEpsilon(e, optEnd);
+                        e = f[1];
+                    }
+                    addEpsilon(e, optEnd);
+                    e = optEnd;
+                }
+                return new int[] { s, e };
+            }
+        }
+
+        BitSet move(BitSet states, int sym) {
+            BitSet result = new BitSet();
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                BitSet b = on.get(s);
+                if (b != null && b.get(sym))
+                    result.set(target.get(s));
+            }
+            return result;
+        }
+
+        BitSet closure(BitSet states) {
+            BitSet result = (BitSet) states.clone();
+            List<Integer> work = new ArrayList<>();
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1))
+                work.add(s);
+            while (!work.isEmpty()) {
+                int s = work.remove(work.size() - 1);
+                for (int t: epsilon.get(s)) {
+                    if (!result.get(t)) {
+                        result.set(t);
+                        work.add(t);
+                    }
+                }
+            }
+            return result;
+        }
+
+        final List<BitSet> on = new ArrayList<>();
+        final List<Integer> target = new ArrayList<>();
+        final List<List<Integer>> epsilon = new ArrayList<>();
+        final List<Integer> accept = new ArrayList<>();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A table of the distinct unexpected lines in a log, with the number of
+ * times each one occurs. Lines are considered the same if they only differ
+ * in timestamps and line numbers.
+ *
+ * The number of distinct lines held in memory is limited. Once the limit
+ * is reached, lines that are not already in the table are spilled to a set
+ * of temporary files, partitioned by the hash of the normalized line. When
+ * the table is reported, each partition is read back and reported in turn,
+ * using a table with the same limit, which may itself spill to files.
+ * Lines are reported in the order they are first found, except that lines
+ * that were spilled are reported after those that were not.
+ *
+ * Partitions are only spilled to a limited depth. If a partition at the
+ * last level still has more distinct lines than the limit, the lines that
+ * do not fit are not shown; instead, a final row for the partition gives
+ * the number of such lines, so that the memory used is always bounded.
+ */
+class DedupTable implements LineScanner.Handler, Closeable {
+    /**
+     * Create a table.
+     * @param limit the maximum number of distinct lines to hold in memory
+     */
+    DedupTable(int limit) {
+        this(limit, 0);
+    }
+
+    private DedupTable(int limit, int level) {
+        this.limit = limit;
+        this.level = level;
+    }
+
+    @Override
+    public void unexpected(String line, long lineNumber, long offset) {
+        add(line);
+    }
+
+    private void add(String line) {
+        String key = normalize(line);
+        Entry e = entries.get(key);
+        if (e != null)
+            e.count++;
+        else if (entries.size() < limit)
+            entries.put(key, new Entry(line));
+        else if (level == MAX_LEVEL)
+            omitted++;
+        else
+            spill(key, line);
+    }
+
+    /**
+     * Write out the distinct lines, each with the number of times it occurred.
+     * @param out the stream to which to write the lines
+     * @throws IOException if an error occurred while spilling or reading
+     *      lines from temporary files
+     */
+    void report(PrintWriter out) throws IOException {
+        if (error != null)
+            throw error;
+
+        for (Entry e: entries.values())
+            out.println(String.format("%7d  %s", e.count, e.line));
+        if (omitted > 0)
+            out.println(String.format("%7d  (further lines not shown: too many distinct lines)", omitted));
+
+        if (spillFiles != null) {
+            for (int i = 0; i < PARTITIONS; i++) {
+                if (spillWriters[i] == null)
+                    continue;
+                spillWriters[i].close();
+                spillWriters[i] = null;
+                try (DedupTable t = new DedupTable(limit, level + 1);
+                        BufferedReader in = new BufferedReader(new InputStreamReader(
+                            new FileInputStream(spillFiles[i]), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null)
+                        t.add(line);
+                    t.report(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete any temporary files used by this table.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillFiles == null)
+            return;
+        for (int i = 0; i < PARTITIONS; i++) {
+            if (spillWriters[i] != null)
+                spillWriters[i].close();
+            if (spillFiles[i] != null)
+                spillFiles[i].delete();
+        }
+        spillFiles = null;
+    }
+
+    /**
+     * Normalize a line, by replacing timestamps and line numbers with a
+     * fixed string.
+     * @param line the line
+     * @return the normalized line
+     */
+    static String normalize(String line) {
+        String s = timestamp.matcher(line).replaceAll("<time>");
+        s = lineNumber.matcher(s).replaceAll("$1#$2");
+        return s;
+    }
+
+    private void spill(String key, String line) {
+        if (error != null)
+            return;
+        try {
+            if (spillFiles == null) {
+                spillFiles = new File[PARTITIONS];
+                spillWriters = new Writer[PARTITIONS];
+            }
+            int p = partition(key);
+            if (spillWriters[p] == null) {
+                spillFiles[p] = File.createTempFile("buildLogFilter", ".spill");
+                spillWriters[p] = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(spillFiles[p]), StandardCharsets.UTF_8));
+            }
+            spillWriters[p].write(line);
+            spillWriters[p].write('\n');
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Get the partition for a key. Each level uses a different hash, so
+     * that keys that share a partition at one level are spread across the
+     * partitions at the next level.
+     */
+    private int partition(String key) {
+        int h = key.hashCode() ^ (level * 0x9E3779B9);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 15);
+        return (h & 0x7fffffff) % PARTITIONS;
+    }
+
+    private static class Entry {
+        Entry(String line) {
+            this.line = line;
+            this.count = 1;
+        }
+
+        final String line;
+        int count;
+    }
+
+    private static final Pattern timestamp = Pattern.compile(
+            "([0-9]{4}-[0-9]{2}-[0-9]{2}[ T])?[0-9]{1,2}:[0-9]{2}:[0-9]{2}([.,][0-9]+)?");
+    private static final Pattern lineNumber = Pattern.compile(
+            "(:|\\(|\\bline )[0-9]+(?:[:,][0-9]+)?(:|\\)|\\b)");
+
+    private static final int PARTITIONS = 16;
+    private static final int MAX_LEVEL = 4;
+
+    private final int limit;
+    private final int level;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private File[] spillFiles;
+    private Writer[] spillWriters;
+    private IOException error;
+    /** The number of lines not shown, once the table at the last level is full. */
+    private long omitted;
+}
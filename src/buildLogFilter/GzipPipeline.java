@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses a gzip-compressed log on a separate thread, passing blocks
+ * of the decompressed data to the reader through a bounded queue, so that
+ * decompressing the log can overlap with scanning it. Blocks should be
+ * released by the reader when they are no longer needed, so that they can
+ * be reused.
+ */
+class GzipPipeline implements Closeable {
+    /**
+     * Determine whether a file is compressed with gzip, by checking for
+     * the gzip magic number at the start of the file.
+     * @param file the file
+     * @return true if the file is compressed with gzip
+     * @throws IOException if an IO error occurs while reading the file
+     */
+    static boolean isGzip(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Create a pipeline, and start decompressing a file.
+     * @param file the file
+     */
+    GzipPipeline(final File file) {
+        for (int i = 0; i < BLOCKS; i++)
+            free.add(ByteBuffer.allocate(BLOCK_SIZE));
+
+        thread = new Thread("GzipPipeline " + file) {
+            @Override
+            public void run() {
+                try {
+                    inflate(file);
+                } catch (InterruptedException e) {
+                    // the pipeline has been closed
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the next block of decompressed data.
+     * @return the next block, or null if all the data has been read
+     * @throws IOException if an error occurred while decompressing the file
+     */
+    ByteBuffer next() throws IOException {
+        ByteBuffer b;
+        try {
+            b = full.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (b == END) {
+            full.add(END);
+            if (error != null)
+                throw error;
+            return null;
+        }
+        return b;
+    }
+
+    /**
+     * Release a block returned by {@link #next}, so that it can be reused.
+     * @param b the block
+     */
+    void release(ByteBuffer b) {
+        free.add(b);
+    }
+
+    /**
+     * Stop decompressing the file, if it has not already been completed.
+     */
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private void inflate(File file) throws InterruptedException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file), BLOCK_SIZE)) {
+            while (true) {
+                ByteBuffer b = free.take();
+                byte[] buf = b.array();
+                int n = 0;
+                int r;
+                while (n < buf.length && (r = in.read(buf, n, buf.length - n)) != -1)
+                    n += r;
+                if (n == 0) {
+                    free.add(b);
+                    break;
+                }
+                b.clear();
+                b.limit(n);
+                full.put(b);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        full.put(END);
+    }
+
+    private static final int BLOCKS = 4;
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** Blocks available to be filled. */
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BLOCKS);
+    /** Blocks that have been filled, followed by END when there is no more data. */
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final Thread thread;
+    private volatile IOException error;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+/**
+ * The line counts for a log, or part of a log.
+ */
+class LineCounts {
+    /**
+     * Create an object for the line counts.
+     */
+    LineCounts() { }
+
+    /**
+     * Create an object for the line counts, including statistics
+     * for each of a number of patterns.
+     * @param nPatterns the number of patterns
+     */
+    LineCounts(int nPatterns) {
+        hits = new int[nPatterns];
+        nanos = new long[nPatterns];
+    }
+
+    /**
+     * Add the counts from another instance into this one.
+     * @param other the counts to be added
+     */
+    void add(LineCounts other) {
+        expected += other.expected;
+        total += other.total;
+        if (other.hits != null) {
+            if (hits == null) {
+                hits = new int[other.hits.length];
+                nanos = new long[other.nanos.length];
+            }
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] += other.hits[i];
+                nanos[i] += other.nanos[i];
+            }
+        }
+    }
+
+    /**
+     * Record a match, or not, for a line when statistics are being collected.
+     * @param index the index of the first pattern to match the line,
+     *      or -1 if no pattern matched
+     */
+    void addMatch(int index) {
+        total++;
+        if (index >= 0) {
+            expected++;
+            hits[index]++;
+        }
+    }
+
+    /** The number of expected/info lines. */
+    int expected;
+    /** The total number of lines. */
+    int total;
+    /**
+     * The number of lines for which each pattern was the first to match,
+     * or null if statistics are not being collected.
+     */
+    int[] hits;
+    /** The time, in nanoseconds, spent matching each pattern. */
+    long[] nanos;
+}
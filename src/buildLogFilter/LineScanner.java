@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classifies the lines in a log directly from its bytes, without decoding
+ * them into strings. Lines containing only ASCII bytes are classified by
+ * the automaton in a {@link CombinedMatcher}; other lines, and any lines
+ * that are unexpected and need to be reported, are decoded as needed.
+ *
+ * The bytes may be given in a series of blocks; lines that span blocks are
+ * handled correctly. Lines are terminated in the same way as for
+ * {@link java.io.BufferedReader#readLine}: by LF, CR or CR LF.
+ */
+class LineScanner {
+    /**
+     * Receives the unexpected lines found by a scanner.
+     */
+    interface Handler {
+        /**
+         * Called for each unexpected line.
+         * @param line the line
+         * @param lineNumber the number of the line, starting from 1
+         * @param offset the byte offset of the start of the line, or -1
+         *      if it is not known
+         */
+        void unexpected(String line, long lineNumber, long offset);
+    }
+
+    /**
+     * Determine whether a log in a given charset can be scanned as bytes.
+     * This requires that all ASCII bytes decode to the corresponding char,
+     * so that any line made of ASCII bytes can be matched without decoding.
+     * @param cs the charset
+     * @return true if the charset can be used with a line scanner
+     */
+    static boolean isSupported(Charset cs) {
+        byte[] b = new byte[CombinedMatcher.ASCII];
+        for (int i = 0; i < b.length; i++)
+            b[i] = (byte) i;
+        String s = new String(b, cs);
+        if (s.length() != b.length)
+            return false;
+        for (int i = 0; i < b.length; i++) {
+            if (s.charAt(i) != i)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Create a scanner.
+     * @param matcher the matcher for expected lines
+     * @param cs the charset for the log
+     * @param handler the handler for unexpected lines, or null if they
+     *      do not need to be reported
+     * @param stats whether to collect statistics for each pattern, in
+     *      which case every line is decoded and matched with
+     *      {@link CombinedMatcher#matchTimed}
+     */
+    LineScanner(CombinedMatcher matcher, Charset cs, Handler handler, boolean stats) {
+        this.matcher = matcher;
+        this.counts = stats ? new LineCounts(matcher.size()) : new LineCounts();
+        this.decoder = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.handler = handler;
+    }
+
+    /**
+     * Get the line counts for the lines scanned so far.
+     * @return the line counts
+     */
+    LineCounts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Scan all the lines in a file.
+     * @param file the file
+     * @throws IOException if an IO error occurs while reading the file
+     */
+    void scan(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            while (ch.read(buf) != -1) {
+                buf.flip();
+                scan(buf);
+                buf.clear();
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Scan the lines in a block of bytes, from its position to its limit.
+     * Any incomplete line at the end of the block is saved, to be completed
+     * by the next block or by {@link #finish}.
+     * On exit, the position of the block is set to its limit.
+     * @param bytes the block of bytes
+     */
+    void scan(ByteBuffer bytes) {
+        int end = bytes.limit();
+        int lineStart = bytes.position();
+        long base = offset - lineStart;
+        if (skipLF && lineStart < end && bytes.get(lineStart) == '\n')
+            lineStart++;
+        skipLF = false;
+
+        for (int i = lineStart; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b == '\n' || b == '\r') {
+                if (partialLength > 0) {
+                    append(bytes, lineStart, i);
+                    line(ByteBuffer.wrap(partial), 0, partialLength, partialOffset);
+                    partialLength = 0;
+                } else
+                    line(bytes, lineStart, i, base + lineStart);
+                if (b == '\r') {
+                    if (i + 1 == end)
+                        skipLF = true;
+                    else if (bytes.get(i + 1) == '\n')
+                        i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        if (lineStart < end) {
+            if (partialLength == 0)
+                partialOffset = base + lineStart;
+            append(bytes, lineStart, end);
+        }
+        offset = base + end;
+        bytes.position(end);
+    }
+
+    /**
+     * Scan any incomplete line left over from the last block.
+     */
+    void finish() {
+        if (partialLength > 0) {
+            line(ByteBuffer.wrap(partial), 0, partialLength, partialOffset);
+            partialLength = 0;
+        }
+        skipLF = false;
+    }
+
+    private void line(ByteBuffer bytes, int start, int end, long lineOffset) {
+        lineNumber++;
+        if (start == end) {
+            counts.total++;
+            counts.expected++;
+            return;
+        }
+
+        if (counts.hits != null) {
+            CharBuffer chars = decode(bytes, start, end);
+            int m = matcher.matchTimed(chars, counts.nanos);
+            counts.addMatch(m);
+            if (m < 0 && handler != null)
+                handler.unexpected(chars.toString(), lineNumber, lineOffset);
+            return;
+        }
+
+        counts.total++;
+
+        int m = matcher.match(bytes, start, end);
+        if (m >= 0) {
+            counts.expected++;
+        } else if (m == CombinedMatcher.UNDECIDED || handler != null) {
+            CharBuffer chars = decode(bytes, start, end);
+            if (m == CombinedMatcher.UNDECIDED && matcher.match(chars, 0, chars.length()) >= 0)
+                counts.expected++;
+            else if (handler != null)
+                handler.unexpected(chars.toString(), lineNumber, lineOffset);
+        }
+    }
+
+    private CharBuffer decode(ByteBuffer bytes, int start, int end) {
+        ByteBuffer b = bytes.duplicate();
+        b.limit(end);
+        b.position(start);
+        try {
+            return decoder.decode(b);
+        } catch (CharacterCodingException e) {
+            // should not happen, since errors are replaced
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void append(ByteBuffer bytes, int start, int end) {
+        int n = end - start;
+        if (partialLength + n > partial.length) {
+            byte[] newPartial = new byte[Math.max(partial.length * 2, partialLength + n)];
+            System.arraycopy(partial, 0, newPartial, 0, partialLength);
+            partial = newPartial;
+        }
+        ByteBuffer b = bytes.duplicate();
+        b.limit(end);
+        b.position(start);
+        b.get(partial, partialLength, n);
+        partialLength += n;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CombinedMatcher matcher;
+    private final CharsetDecoder decoder;
+    private final Handler handler;
+    private final LineCounts counts;
+
+    /** The number of lines scanned so far. */
+    private long lineNumber;
+    /** The byte offset of the start of the next block. */
+    private long offset;
+
+    /** The bytes of an incomplete line at the end of the previous block. */
+    private byte[] partial = new byte[256];
+    private int partialLength;
+    /** The byte offset of the start of the incomplete line. */
+    private long partialOffset;
+    /** Whether the previous block ended with CR. */
+    private boolean skipLF;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Follows a log that is still being written, in the manner of
+ * {@code tail -f}, scanning only the bytes that have been appended since
+ * the previous poll. The running totals are reported periodically, and
+ * following stops when the log has not grown for a given period of time,
+ * when the log is truncated, or when the thread is interrupted.
+ */
+abstract class LogFollower {
+    /**
+     * Create a follower.
+     * @param scanner the scanner for the lines in the log
+     * @param out the stream used for unexpected lines, which is flushed
+     *      after new content has been scanned
+     */
+    LogFollower(LineScanner scanner, PrintWriter out) {
+        this.scanner = scanner;
+        this.out = out;
+    }
+
+    /**
+     * Follow a log file.
+     * @param file the file
+     * @param intervalMillis the interval between calls to {@link #update}
+     * @param idleMillis the time after which to stop if the file does not
+     *      grow, or 0 to follow the file indefinitely
+     * @throws IOException if an IO error occurs while reading the file
+     */
+    void follow(File file, long intervalMillis, long idleMillis) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            long pos = 0;
+            long lastChange = System.currentTimeMillis();
+            long lastUpdate = lastChange;
+            while (true) {
+                long size = ch.size();
+                if (size < pos) {
+                    out.println("Log file truncated: " + file);
+                    break;
+                }
+
+                boolean changed = false;
+                while (pos < size) {
+                    buf.clear();
+                    int n = ch.read(buf, pos);
+                    if (n <= 0)
+                        break;
+                    pos += n;
+                    buf.flip();
+                    scanner.scan(buf);
+                    changed = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (changed) {
+                    out.flush();
+                    lastChange = now;
+                }
+                if (now - lastUpdate >= intervalMillis) {
+                    update(scanner.getCounts());
+                    lastUpdate = now;
+                }
+                if (idleMillis > 0 && now - lastChange >= idleMillis)
+                    break;
+
+                try {
+                    Thread.sleep(Math.min(POLL_MILLIS, intervalMillis));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        scanner.finish();
+    }
+
+    /**
+     * Called periodically with the running totals for the log.
+     * @param counts the line counts so far
+     * @throws IOException if an IO error occurs while reporting the totals
+     */
+    protected abstract void update(LineCounts counts) throws IOException;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long POLL_MILLIS = 1000;
+
+    private final LineScanner scanner;
+    private final PrintWriter out;
+}
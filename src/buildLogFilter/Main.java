@@ -25,25 +25,65 @@ package buildLogFilter;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPInputStream;
 
 
 /**
  * Simple program that filters out the informative/chatty messages from a
  * standard (new)JDK build log, leaving any diagnostic messages that need to be
- * addressed.  A line count summary is provided.
+ * addressed.  A line count summary is provided.  Logs compressed with gzip
+ * are decompressed automatically.
  *
  * Usage:
- *  java -jar BuildLogFilter.jar options logfile
+ *  java -jar BuildLogFilter.jar options logfile...
  *
  * Options:
  *  -q --quiet      Do not show the filtered log file; just show the
  *                  line count stats
  *  -xml file       Specify a file for an XML report
+ *  -index file     Write an index of the positions of the unexpected lines
+ *  -parallel n     Scan the log with n threads
+ *  -jobs n         Number of logs to scan at the same time
+ *  -follow         Follow a log that is still being written
+ *  -interval n     Seconds between updates when following a log
+ *  -idle n         Seconds without growth after which to stop following
+ *  -dedup          Show each distinct unexpected line once, with a count
+ *  -dedup-limit n  Maximum number of distinct lines to hold in memory
+ *  -stats          Report the lines matched by, and the time spent on,
+ *                  each pattern
+ *  -patterns file  Read additional expected patterns from a file
+ *  -no-default-patterns
+ *                  Do not use the default expected patterns
+ *  -cache dir      Directory in which to cache compiled patterns
+ *  -nocache        Do not cache compiled patterns
  *
  * @author jjg
  */
@@ -72,15 +112,50 @@ public class Main {
         out.println("  to be addressed.");
         out.println();
         out.println("Usage:");
-        out.println("  java -jar BuildLogFilter.jar options logfile");
+        out.println("  java -jar BuildLogFilter.jar options logfile...");
         out.println();
         out.println("Options:");
         out.println("  -h -help --help   Show this message");
         out.println("  -q --quiet        Do not show the filtered log file; just show the ");
         out.println("                    line count stats");
         out.println("  -xml file         Specify file for XML report.");
+        out.println("  -index file       Write a binary index of the byte offset and line");
+        out.println("                    number of each unexpected line, sorted by offset.");
+        out.println("  -parallel n       Scan the log in chunks, using n threads.");
+        out.println("  -jobs n           When given more than one log, the number of logs to");
+        out.println("                    scan at the same time (default: number of processors)");
+        out.println("  -follow           Follow a log that is still being written, like");
+        out.println("                    tail -f, updating the totals and XML report");
+        out.println("                    periodically.");
+        out.println("  -interval n       Seconds between updates when following a log");
+        out.println("                    (default: " + DEFAULT_INTERVAL + ")");
+        out.println("  -idle n           Stop following a log if it does not grow for n");
+        out.println("                    seconds, or 0 for no limit (default: " + DEFAULT_IDLE + ")");
+        out.println("  -dedup            Show each distinct unexpected line once, with the");
+        out.println("                    number of times it occurs. Lines that only differ");
+        out.println("                    in timestamps and line numbers are considered the");
+        out.println("                    same. The lines are shown when the log has been read.");
+        out.println("  -dedup-limit n    Maximum number of distinct lines to hold in memory");
+        out.println("                    for -dedup; any more are spilled to temporary files");
+        out.println("                    (default: " + DEFAULT_DEDUP_LIMIT + ")");
+        out.println("  -stats            Report the number of lines matched by each pattern,");
+        out.println("                    and the time spent matching it. The time is that");
+        out.println("                    taken to match each pattern separately, in order,");
+        out.println("                    with its regular expression.");
+        out.println("  -patterns file    Read additional expected patterns from a file, one");
+        out.println("                    regular expression per line; blank lines and lines");
+        out.println("                    beginning with # are ignored");
+        out.println("  -no-default-patterns");
+        out.println("                    Do not use the default expected patterns");
+        out.println("  -cache dir        Directory in which to cache compiled patterns");
+        out.println("                    (default: " + getDefaultCacheDir() + ")");
+        out.println("  -nocache          Do not cache compiled patterns");
         out.println();
-        out.println("logfile             logfile from JDK build at default log level");
+        out.println("logfile             logfile from JDK build at default log level, or a");
+        out.println("                    directory of such logs, or a glob pattern for the");
+        out.println("                    names of such logs in a directory. If more than one");
+        out.println("                    log is given, each is reported separately, followed");
+        out.println("                    by the totals for all the logs.");
     }
 
     /**
@@ -115,21 +190,147 @@ public class Main {
             return true;
         }
 
-        int expected = 0, total = 0;
+        if (!initMatcher())
+            return false;
 
-        try (BufferedReader r = new BufferedReader(new FileReader(inFile))) {
-            String line;
-            while ((line = r.readLine()) != null) {
-                total++;
-                if (isExpected(line))
-                    expected++;
-                else {
-                    if (!quiet)
-                        out.println(line);
+        if (inFiles.size() > 1)
+            return runBatch(out);
+
+        File inFile = inFiles.get(0);
+        if (follow && GzipPipeline.isGzip(inFile)) {
+            error("-follow cannot be used with a compressed log");
+            return false;
+        }
+        LineCounts counts = follow ? follow(inFile, out) : scan(inFile, out);
+
+        writeSummary(out, counts);
+        writeStats(out, counts);
+
+        if (xmlFile != null)
+            new XMLReportWriter(matcher, indexFile).write(xmlFile, counts, null);
+
+        return true;
+    }
+
+    /**
+     * Scan a number of logs concurrently, on a bounded thread pool.
+     * The output for each log is saved, and written out in the order the
+     * logs were given, followed by the totals for all the logs.
+     * At most {@code jobs} logs are in progress or waiting to be written
+     * at any one time, so that the memory used for the saved output is
+     * bounded. If the logs are also scanned in parallel, the chunks of
+     * all the logs are classified on a single shared pool.
+     * @return true if all the logs were successfully scanned
+     */
+    boolean runBatch(PrintWriter out) throws IOException {
+        int window = Math.min(jobs, inFiles.size());
+        ExecutorService pool = Executors.newFixedThreadPool(window);
+        if (parallel > 1)
+            scanPool = new ForkJoinPool(parallel);
+        try {
+            List<Future<LogResult>> futures = new ArrayList<>();
+            for (int i = 0; i < window - 1; i++)
+                futures.add(submit(pool, inFiles.get(i)));
+
+            LineCounts allCounts = new LineCounts();
+            Map<File, LineCounts> logCounts = new LinkedHashMap<>();
+            for (int i = 0; i < inFiles.size(); i++) {
+                if (i + window - 1 < inFiles.size())
+                    futures.add(submit(pool, inFiles.get(i + window - 1)));
+                File f = inFiles.get(i);
+                LogResult r;
+                try {
+                    r = futures.get(i).get();
+                    futures.set(i, null);
+                } catch (ExecutionException e) {
+                    Throwable t = e.getCause();
+                    if (t instanceof IOException) {
+                        error("error reading " + f + ": " + t);
+                        continue;
+                    } else if (t instanceof RuntimeException)
+                        throw (RuntimeException) t;
+                    else if (t instanceof Error)
+                        throw (Error) t;
+                    else
+                        throw new IllegalStateException(t);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
                 }
+                out.println("Log: " + f);
+                out.print(r.output);
+                writeSummary(out, r.counts);
+                out.println();
+                out.flush();
+                allCounts.add(r.counts);
+                logCounts.put(f, r.counts);
             }
+
+            out.println("All logs: " + logCounts.size());
+            writeSummary(out, allCounts);
+            writeStats(out, allCounts);
+
+            if (xmlFile != null)
+                new XMLReportWriter(matcher, null).write(xmlFile, allCounts, logCounts);
+        } finally {
+            pool.shutdownNow();
+            if (scanPool != null) {
+                scanPool.shutdownNow();
+                scanPool = null;
+            }
+        }
+
+        return (errors == 0);
+    }
+
+    /**
+     * Submit a task to scan a log as part of a batch, saving its output.
+     */
+    private Future<LogResult> submit(ExecutorService pool, final File f) {
+        return pool.submit(new Callable<LogResult>() {
+            @Override
+            public LogResult call() throws IOException {
+                StringWriter sw = new StringWriter();
+                try (PrintWriter pw = new PrintWriter(sw)) {
+                    LineCounts counts = scan(f, pw);
+                    pw.flush();
+                    return new LogResult(counts, sw.toString());
+                }
+            }
+        });
+    }
+
+    /** The results of scanning a log as part of a batch. */
+    private static class LogResult {
+        LogResult(LineCounts counts, String output) {
+            this.counts = counts;
+            this.output = output;
+        }
+
+        final LineCounts counts;
+        final String output;
+    }
+
+    /**
+     * Write the statistics for each pattern, if they have been collected.
+     */
+    void writeStats(PrintWriter out, LineCounts counts) {
+        if (counts.hits == null)
+            return;
+        out.println();
+        out.println("     Lines   Time (ms)  Pattern");
+        int empty = counts.expected;
+        for (int i = 0; i < counts.hits.length; i++) {
+            out.println(String.format("%10d %11.1f  %s",
+                    counts.hits[i], counts.nanos[i] / 1e6, matcher.getPattern(i)));
+            empty -= counts.hits[i];
         }
+        out.println(String.format("%10d %11s  %s", empty, "", "(empty lines)"));
+        out.println(String.format("%10d %11s  %s",
+                counts.total - counts.expected, "", "(unexpected lines)"));
+    }
 
+    void writeSummary(PrintWriter out, LineCounts counts) {
+        int expected = counts.expected, total = counts.total;
         if (total == 0) {
             out.println("Log is empty");
         } else {
@@ -141,21 +342,199 @@ public class Main {
             out.println(String.format("(TOTAL)               %5d",
                     total));
         }
+    }
 
-        if (xmlFile != null)
-            new XMLReportWriter().write(xmlFile, expected, total);
+    LineCounts scan(File inFile, PrintWriter out) throws IOException {
+        if (!dedup || quiet)
+            return scanIndexed(inFile, createHandler(out));
+
+        try (DedupTable table = new DedupTable(dedupLimit)) {
+            LineCounts counts = scanIndexed(inFile, table);
+            table.report(out);
+            return counts;
+        }
+    }
+
+    private LineCounts scanIndexed(File inFile, LineScanner.Handler h) throws IOException {
+        if (indexFile == null)
+            return scan(inFile, h);
+
+        try (OffsetIndexWriter w = new OffsetIndexWriter(indexFile, h)) {
+            return scan(inFile, w);
+        }
+    }
 
+    private LineCounts scan(File inFile, LineScanner.Handler h) throws IOException {
+        boolean gzip = GzipPipeline.isGzip(inFile);
+        if (!LineScanner.isSupported(Charset.defaultCharset()))
+            return scanChars(inFile, gzip, h);
+        if (gzip)
+            return scanGzip(inFile, h);
+        if (parallel > 1) {
+            ParallelScanner ps = (scanPool != null)
+                    ? new ParallelScanner(matcher, scanPool, stats)
+                    : new ParallelScanner(matcher, parallel, stats);
+            return ps.scan(inFile, h);
+        }
+        LineScanner s = createScanner(h);
+        s.scan(inFile);
+        return s.getCounts();
+    }
+
+    /**
+     * Scan a gzip-compressed log, decompressing it on a separate thread.
+     */
+    LineCounts scanGzip(File inFile, LineScanner.Handler h) throws IOException {
+        LineScanner s = createScanner(h);
+        try (GzipPipeline p = new GzipPipeline(inFile)) {
+            ByteBuffer b;
+            while ((b = p.next()) != null) {
+                s.scan(b);
+                p.release(b);
+            }
+        }
+        s.finish();
+        return s.getCounts();
+    }
+
+    LineCounts follow(File inFile, final PrintWriter out) throws IOException {
+        if (!dedup || quiet)
+            return followIndexed(inFile, out, createHandler(out));
+
+        try (DedupTable table = new DedupTable(dedupLimit)) {
+            LineCounts counts = followIndexed(inFile, out, table);
+            table.report(out);
+            return counts;
+        }
+    }
+
+    private LineCounts followIndexed(File inFile, PrintWriter out, LineScanner.Handler h)
+            throws IOException {
+        if (indexFile == null)
+            return follow(inFile, out, h);
+
+        try (OffsetIndexWriter w = new OffsetIndexWriter(indexFile, h)) {
+            return follow(inFile, out, w);
+        }
+    }
+
+    private LineCounts follow(File inFile, final PrintWriter out, LineScanner.Handler h)
+            throws IOException {
+        LineScanner s = createScanner(h);
+        LogFollower f = new LogFollower(s, out) {
+            @Override
+            protected void update(LineCounts counts) throws IOException {
+                out.println(String.format("[%d lines: %d expected, %d unexpected]",
+                        counts.total, counts.expected, counts.total - counts.expected));
+                out.flush();
+                if (xmlFile != null)
+                    new XMLReportWriter(matcher, indexFile).write(xmlFile, counts, null);
+            }
+        };
+        f.follow(inFile, interval * 1000L, idle * 1000L);
+        return s.getCounts();
+    }
+
+    private LineScanner createScanner(LineScanner.Handler h) {
+        return new LineScanner(matcher, Charset.defaultCharset(), h, stats);
+    }
+
+    /**
+     * Create a handler to write out unexpected lines as they are found.
+     * @return the handler, or null if unexpected lines should not be shown
+     */
+    private LineScanner.Handler createHandler(final PrintWriter out) {
+        if (quiet)
+            return null;
+        return new LineScanner.Handler() {
+            @Override
+            public void unexpected(String line, long lineNumber, long offset) {
+                out.println(line);
+            }
+        };
+    }
+
+    LineCounts scanChars(File inFile, boolean gzip, LineScanner.Handler h) throws IOException {
+        LineCounts counts = stats ? new LineCounts(matcher.size()) : new LineCounts();
+        InputStream in = new FileInputStream(inFile);
+        if (gzip)
+            in = new GZIPInputStream(in);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = r.readLine()) != null) {
+                lineNumber++;
+                boolean expected;
+                if (stats && !line.isEmpty()) {
+                    int m = matcher.matchTimed(line, counts.nanos);
+                    counts.addMatch(m);
+                    expected = (m >= 0);
+                } else {
+                    counts.total++;
+                    expected = isExpected(line);
+                    if (expected)
+                        counts.expected++;
+                }
+                if (!expected && h != null)
+                    h.unexpected(line, lineNumber, -1);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Initialize the matcher for expected lines, if any patterns other than
+     * the default patterns have been specified.
+     * @return true if the matcher was successfully initialized
+     * @throws IOException if an IO error occurs while reading a patterns file
+     */
+    boolean initMatcher() throws IOException {
+        if (patternFiles.isEmpty() && useDefaultPatterns)
+            return true;
+
+        List<String> regexes = new ArrayList<>();
+        if (useDefaultPatterns) {
+            for (Pattern p: expectedPatterns)
+                regexes.add(p.pattern());
+        }
+        for (File f: patternFiles)
+            regexes.addAll(readPatterns(f));
+
+        try {
+            if (cacheDir == null) {
+                List<Pattern> patterns = new ArrayList<>();
+                for (String r: regexes)
+                    patterns.add(Pattern.compile(r));
+                matcher = new CombinedMatcher(patterns);
+            } else
+                matcher = new MatcherCache(cacheDir).get(regexes);
+        } catch (PatternSyntaxException e) {
+            error("bad pattern: " + e.getMessage());
+            return false;
+        }
         return true;
     }
 
+    List<String> readPatterns(File f) throws IOException {
+        List<String> regexes = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    regexes.add(line);
+            }
+        }
+        return regexes;
+    }
+
+    static File getDefaultCacheDir() {
+        return new File(new File(System.getProperty("user.home"), ".cache"), "buildLogFilter");
+    }
+
     boolean isExpected(String line) {
         if (line.isEmpty())
             return true;
-        for (Pattern p: expectedPatterns) {
-            if (p.matcher(line).matches())
-                return true;
-        }
-        return false;
+        return matcher.matches(line);
     }
 
     private static final Pattern[] expectedPatterns = {
@@ -167,6 +546,9 @@ public class Main {
         Pattern.compile("^[0-9][0-9]:[0-9][0-9]:[0-9][0-9] [A-Za-z0-9]+"),
     };
 
+    private static final CombinedMatcher expectedMatcher =
+            new CombinedMatcher(Arrays.asList(expectedPatterns));
+
     /**
      * Process command-line arguments.
      * @param args the arguments to be processed
@@ -181,32 +563,158 @@ public class Main {
                 quiet = true;
             else if (arg.equals("-xml") && i + 1 < args.length)
                 xmlFile = new File(args[++i]);
+            else if (arg.equals("-index") && i + 1 < args.length)
+                indexFile = new File(args[++i]);
+            else if (arg.equals("-parallel") && i + 1 < args.length)
+                parallel = intArg(arg, args[++i]);
+            else if (arg.equals("-jobs") && i + 1 < args.length)
+                jobs = intArg(arg, args[++i]);
+            else if (arg.equals("-stats"))
+                stats = true;
+            else if (arg.equals("-dedup"))
+                dedup = true;
+            else if (arg.equals("-dedup-limit") && i + 1 < args.length)
+                dedupLimit = intArg(arg, args[++i]);
+            else if (arg.equals("-patterns") && i + 1 < args.length)
+                patternFiles.add(new File(args[++i]));
+            else if (arg.equals("-no-default-patterns"))
+                useDefaultPatterns = false;
+            else if (arg.equals("-cache") && i + 1 < args.length)
+                cacheDir = new File(args[++i]);
+            else if (arg.equals("-nocache"))
+                cacheDir = null;
+            else if (arg.equals("-follow"))
+                follow = true;
+            else if (arg.equals("-interval") && i + 1 < args.length)
+                interval = intArg(arg, args[++i]);
+            else if (arg.equals("-idle") && i + 1 < args.length)
+                idle = intArg(arg, args[++i]);
             else if (arg.matches("-h|-help|--help"))
                 help = true;
             else if (arg.startsWith("-"))
                 error("Unrecognized option: " + arg);
-            else {
-                if (inFile != null)
-                    error("Unexpected argument");
-                inFile = new File(arg);
-            }
+            else
+                addLogs(arg);
         }
 
         if (help)
             return;
 
-        if (inFile == null)
+        if (inFiles.isEmpty())
             error("no build log specified");
-        else if (!inFile.exists())
-            error("can't find " + inFile);
-        else if (!inFile.canRead())
-            error("can't read " + inFile);
+        for (File f: inFiles) {
+            if (!f.exists())
+                error("can't find " + f);
+            else if (!f.canRead())
+                error("can't read " + f);
+        }
+        if (jobs <= 0)
+            error("bad value for -jobs: " + jobs);
+        if (dedupLimit <= 0)
+            error("bad value for -dedup-limit: " + dedupLimit);
+
+        for (File f: patternFiles) {
+            if (!f.exists())
+                error("can't find " + f);
+            else if (!f.canRead())
+                error("can't read " + f);
+        }
+
+        if (indexFile != null) {
+            if (inFiles.size() > 1)
+                error("-index can only be used with a single log");
+            if (!LineScanner.isSupported(Charset.defaultCharset()))
+                error("-index is not supported for charset " + Charset.defaultCharset());
+        }
+
+        if (follow) {
+            if (inFiles.size() > 1)
+                error("-follow can only be used with a single log");
+            if (parallel > 1)
+                error("-follow cannot be used with -parallel");
+            if (!LineScanner.isSupported(Charset.defaultCharset()))
+                error("-follow is not supported for charset " + Charset.defaultCharset());
+            if (interval <= 0)
+                error("bad value for -interval: " + interval);
+        }
+    }
+
+    /**
+     * Add the logs specified by a command-line argument, which may be
+     * a file, a directory containing logs, or a glob pattern for the names
+     * of logs in a directory.
+     */
+    private void addLogs(String arg) {
+        File f = new File(arg);
+        if (f.isDirectory()) {
+            List<File> files = listFiles(f, null);
+            if (files.isEmpty())
+                error("no logs found in " + f);
+            inFiles.addAll(files);
+        } else if (!f.exists() && arg.matches(".*[*?\\[{].*")) {
+            File dir = f.getAbsoluteFile().getParentFile();
+            PathMatcher m;
+            try {
+                m = FileSystems.getDefault().getPathMatcher("glob:" + f.getName());
+            } catch (IllegalArgumentException e) {
+                error("bad pattern: " + arg);
+                return;
+            }
+            List<File> files = listFiles(dir, m);
+            if (files.isEmpty())
+                error("no logs match " + arg);
+            inFiles.addAll(files);
+        } else
+            inFiles.add(f);
+    }
+
+    private List<File> listFiles(File dir, PathMatcher m) {
+        List<File> files = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File c: children) {
+                if (c.isFile() && (m == null || m.matches(c.toPath().getFileName())))
+                    files.add(c);
+            }
+        }
+        return files;
+    }
+
+    private int intArg(String opt, String value) {
+        try {
+            int i = Integer.parseInt(value);
+            if (i >= 0)
+                return i;
+        } catch (NumberFormatException e) {
+        }
+        error("bad value for " + opt + ": " + value);
+        return 0;
     }
 
     boolean help = false;
     boolean quiet = false;
-    File inFile;
+    List<File> inFiles = new ArrayList<>();
     File xmlFile;
+    File indexFile;
+    int parallel;
+    /** The pool shared by the parallel scans of the logs in a batch, if any. */
+    ForkJoinPool scanPool;
+    int jobs = Runtime.getRuntime().availableProcessors();
+    List<File> patternFiles = new ArrayList<>();
+    boolean useDefaultPatterns = true;
+    File cacheDir = getDefaultCacheDir();
+    CombinedMatcher matcher = expectedMatcher;
+    boolean stats;
+    boolean dedup;
+    int dedupLimit = DEFAULT_DEDUP_LIMIT;
+    boolean follow;
+    int interval = DEFAULT_INTERVAL;
+    int idle = DEFAULT_IDLE;
+
+    static final int DEFAULT_INTERVAL = 30;
+    static final int DEFAULT_IDLE = 600;
+    static final int DEFAULT_DEDUP_LIMIT = 100000;
 
     /**
      * Record an error message.
@@ -222,14 +730,93 @@ public class Main {
     int errors;
 
     static class XMLReportWriter {
-        void write(File xmlFile, int expected, int total) throws IOException {
-            try (PrintWriter out = new PrintWriter(new FileWriter(xmlFile))) {
+        /**
+         * Create a writer.
+         * @param matcher the matcher used to find the expected lines, used
+         *      to report statistics for each pattern, if available
+         * @param indexFile the index of the unexpected lines, or null if none
+         */
+        XMLReportWriter(CombinedMatcher matcher, File indexFile) {
+            this.matcher = matcher;
+            this.indexFile = indexFile;
+        }
+
+        void write(File xmlFile, LineCounts counts, Map<File, LineCounts> logCounts) throws IOException {
+            // write to a temporary file first, so that the report can be
+            // updated while it is being read, when following a log
+            File tmpFile = new File(xmlFile.getPath() + ".tmp");
+            try (PrintWriter out = new PrintWriter(new FileWriter(tmpFile))) {
                 out.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
                 out.println("<buildLogFilter>");
-                out.println("<expected>" + expected + "</expected>");
-                out.println("<unexpected>" + (total - expected) + "</unexpected>");
+                if (logCounts != null) {
+                    for (Map.Entry<File, LineCounts> e: logCounts.entrySet()) {
+                        out.println("<log name=\"" + escape(e.getKey().getPath()) + "\">");
+                        writeCounts(out, e.getValue());
+                        out.println("</log>");
+                    }
+                }
+                writeCounts(out, counts);
+                if (indexFile != null) {
+                    out.println("<index file=\"" + escape(indexFile.getPath()) + "\""
+                            + " format=\"offset,line\"/>");
+                }
                 out.println("</buildLogFilter>");
             }
+            Files.move(tmpFile.toPath(), xmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
+
+        private void writeCounts(PrintWriter out, LineCounts counts) {
+            out.println("<expected>" + counts.expected + "</expected>");
+            out.println("<unexpected>" + (counts.total - counts.expected) + "</unexpected>");
+            if (counts.hits != null) {
+                out.println("<patterns>");
+                for (int i = 0; i < counts.hits.length; i++) {
+                    out.println("<pattern lines=\"" + counts.hits[i] + "\""
+                            + " nanos=\"" + counts.nanos[i] + "\">"
+                            + escape(matcher.getPattern(i)) + "</pattern>");
+                }
+                out.println("<unmatched lines=\"" + (counts.total - counts.expected) + "\"/>");
+                out.println("</patterns>");
+            }
+        }
+
+        /**
+         * Escape a string for use in XML. Non-ASCII characters are written
+         * as character references, by code point, and characters that are
+         * not allowed in XML 1.0, such as most control characters and
+         * unpaired surrogates, are replaced by U+FFFD.
+         */
+        private String escape(String s) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < s.length(); ) {
+                int c = s.codePointAt(i);
+                i += Character.charCount(c);
+                switch (c) {
+                    case '<': sb.append("&lt;"); break;
+                    case '>': sb.append("&gt;"); break;
+                    case '&': sb.append("&amp;"); break;
+                    case '"': sb.append("&quot;"); break;
+                    default:
+                        if (!isXmlChar(c))
+                            c = 0xFFFD;
+                        if (c > 0x7f)
+                            sb.append("&#").append(c).append(";");
+                        else
+                            sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private boolean isXmlChar(int c) {
+            if (c < 0x20)
+                return c == '\t' || c == '\n' || c == '\r';
+            if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+                return false;
+            return c != 0xFFFE && c != 0xFFFF;
+        }
+
+        private final CombinedMatcher matcher;
+        private final File indexFile;
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A cache of serialized {@link CombinedMatcher} objects, keyed by a hash
+ * of the list of patterns from which they were built. This allows repeated
+ * runs with the same set of patterns to skip compiling the patterns and
+ * building the automaton.
+ *
+ * The cache directory is created so that it is only accessible to the
+ * current user, and entries are read with a stream that only allows the
+ * classes used by {@code CombinedMatcher}; an entry that is rejected or
+ * found to be inconsistent is ignored and rebuilt.
+ */
+class MatcherCache {
+    /**
+     * Create a cache that uses the given directory.
+     * @param dir the directory
+     */
+    MatcherCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Get a matcher for a list of patterns, from the cache if possible.
+     * If the matcher is not found in the cache, it is built and then saved
+     * in the cache. A cache entry that cannot be read is ignored, and any
+     * error while saving an entry is reported as a warning.
+     * @param regexes the patterns
+     * @return the matcher
+     * @throws java.util.regex.PatternSyntaxException if the matcher must be
+     *      built and one of the patterns is invalid
+     */
+    CombinedMatcher get(List<String> regexes) {
+        File file = new File(dir, getKey(regexes) + ".ser");
+        if (file.exists()) {
+            try (ObjectInputStream in = new MatcherInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                return (CombinedMatcher) in.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                System.err.println("Warning: ignoring bad cache entry " + file + ": " + e);
+            }
+        }
+
+        List<Pattern> patterns = new ArrayList<>();
+        for (String r: regexes)
+            patterns.add(Pattern.compile(r));
+        CombinedMatcher m = new CombinedMatcher(patterns);
+
+        try {
+            createDirectory(dir);
+            // write to a temporary file first, in case another process
+            // is using the same cache at the same time
+            File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeObject(m);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Warning: cannot write cache entry " + file + ": " + e);
+        }
+
+        return m;
+    }
+
+    /**
+     * Create the cache directory if it does not exist, so that it can only
+     * be accessed by the current user.
+     */
+    private static void createDirectory(File dir) throws IOException {
+        if (dir.isDirectory())
+            return;
+        Path path = dir.toPath();
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(path,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(path);
+            dir.setReadable(false, false);
+            dir.setWritable(false, false);
+            dir.setExecutable(false, false);
+            dir.setReadable(true, true);
+            dir.setWritable(true, true);
+            dir.setExecutable(true, true);
+        }
+    }
+
+    /**
+     * Get the key for a list of patterns. The key includes the serial
+     * version of {@code CombinedMatcher}, so that entries written by
+     * incompatible versions are not used.
+     */
+    private static String getKey(List<String> regexes) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(String.valueOf(CombinedMatcher.serialVersionUID).getBytes(StandardCharsets.UTF_8));
+            for (String r: regexes) {
+                md.update((byte) '\n');
+                md.update(r.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b: md.digest())
+                sb.append(String.format("%02x", b & 0xff));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by all Java platforms
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A stream for reading cache entries, which only resolves the classes
+     * used in the serialized form of {@code CombinedMatcher}: the matcher
+     * itself, primitive arrays, strings and arrays of strings.
+     */
+    private static class MatcherInputStream extends ObjectInputStream {
+        MatcherInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (!name.equals(CombinedMatcher.class.getName())
+                    && !name.equals(String.class.getName())
+                    && !name.equals(String[].class.getName())
+                    && !(name.length() == 2 && name.charAt(0) == '['))
+                throw new InvalidClassException(name, "not allowed in a cache entry");
+            return super.resolveClass(desc);
+        }
+    }
+
+    private final File dir;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes an index of the positions of the unexpected lines in a log,
+ * so that they can be found in the log without scanning it again.
+ * Any lines are also passed on to another handler, if one is given.
+ *
+ * The index is a binary file, written with {@link DataOutputStream}:
+ * <pre>
+ *   int    magic number, 0x424C4649 ("BLFI")
+ *   int    version, 1
+ *   long   number of entries
+ *   entries, each of:
+ *     long   byte offset of the start of the line
+ *     long   line number, starting from 1
+ * </pre>
+ * The entries are in the order the lines appear in the log, and so are
+ * sorted by both offset and line number; since each entry has a fixed size,
+ * the index can be searched directly. For a compressed log, the offsets
+ * are within the uncompressed content. The number of entries is written
+ * when the index is closed.
+ */
+class OffsetIndexWriter implements LineScanner.Handler, Closeable {
+    static final int MAGIC = 0x424C4649;
+    static final int VERSION = 1;
+    /** The size of the header, before the first entry. */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * Create a writer.
+     * @param file the file for the index
+     * @param next the handler to which to pass the lines, or null if none
+     * @throws IOException if the file cannot be created
+     */
+    OffsetIndexWriter(File file, LineScanner.Handler next) throws IOException {
+        this.file = file;
+        this.next = next;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(0);
+    }
+
+    @Override
+    public void unexpected(String line, long lineNumber, long offset) {
+        if (next != null)
+            next.unexpected(line, lineNumber, offset);
+        if (error != null)
+            return;
+        try {
+            out.writeLong(offset);
+            out.writeLong(lineNumber);
+            count++;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Get the number of entries written to the index.
+     * @return the number of entries
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Close the index, and record the number of entries in it.
+     * @throws IOException if an error occurred while writing the index
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (error != null)
+            throw error;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(HEADER_SIZE - 8);
+            raf.writeLong(count);
+        }
+    }
+
+    private final File file;
+    private final LineScanner.Handler next;
+    private final DataOutputStream out;
+    private long count;
+    /** Any error that occurred while writing an entry. */
+    private IOException error;
+}
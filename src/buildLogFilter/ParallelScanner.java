@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a log file by memory-mapping it, splitting it into chunks that
+ * each end with a line terminator, and classifying the chunks in parallel
+ * on a fork/join pool. A chunk that contains a very long line is mapped
+ * in a series of segments, which are scanned in turn, so that no single
+ * mapping exceeds {@code MAX_CHUNK_SIZE}. The unexpected lines are passed to a handler in their
+ * original order, as each chunk completes; since the chunks are joined in
+ * order, the line numbers and offsets reported within each chunk can be
+ * adjusted by the number of lines and bytes in the preceding chunks.
+ */
+class ParallelScanner {
+    /**
+     * Create a scanner.
+     * @param matcher the matcher for expected lines
+     * @param nThreads the number of threads to use
+     * @param stats whether to collect statistics for each pattern
+     */
+    ParallelScanner(CombinedMatcher matcher, int nThreads, boolean stats) {
+        this.matcher = matcher;
+        this.pool = null;
+        this.nThreads = nThreads;
+        this.stats = stats;
+    }
+
+    /**
+     * Create a scanner that uses a given pool, which may be shared with
+     * other scanners. The pool is not shut down when a scan completes.
+     * @param matcher the matcher for expected lines
+     * @param pool the pool
+     * @param stats whether to collect statistics for each pattern
+     */
+    ParallelScanner(CombinedMatcher matcher, ForkJoinPool pool, boolean stats) {
+        this.matcher = matcher;
+        this.pool = pool;
+        this.nThreads = pool.getParallelism();
+        this.stats = stats;
+    }
+
+    /**
+     * Scan a log file. The charset for the file must be supported by
+     * {@link LineScanner}.
+     * @param file the file to be scanned
+     * @param handler the handler for unexpected lines, or null if they
+     *      do not need to be reported
+     * @return the line counts for the file
+     * @throws IOException if an IO error occurs while reading the file
+     */
+    LineCounts scan(File file, LineScanner.Handler handler) throws IOException {
+        LineCounts counts = new LineCounts();
+        Charset cs = Charset.defaultCharset();
+        ForkJoinPool pool = (this.pool != null) ? this.pool : new ForkJoinPool(nThreads);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    Math.min(MAX_CHUNK_SIZE, size / (nThreads * 4)));
+            Deque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+            long start = 0;
+            long lineBase = 0;
+            while (start < size || !pending.isEmpty()) {
+                while (start < size && pending.size() < nThreads * 4) {
+                    long end = findLineEnd(ch, Math.min(start + chunkSize, size), size);
+                    List<ByteBuffer> segments = new ArrayList<>();
+                    for (long pos = start; pos < end; pos += MAX_CHUNK_SIZE) {
+                        long n = Math.min(MAX_CHUNK_SIZE, end - pos);
+                        segments.add(ch.map(FileChannel.MapMode.READ_ONLY, pos, n));
+                    }
+                    pending.add(pool.submit(new ChunkTask(matcher, segments, start, cs, handler != null, stats)));
+                    start = end;
+                }
+                Chunk c = pending.remove().join();
+                counts.add(c.counts);
+                if (handler != null) {
+                    for (int i = 0; i < c.unexpected.size(); i++) {
+                        handler.unexpected(c.unexpected.get(i),
+                                lineBase + c.lineNumbers[i], c.offset + c.offsets[i]);
+                    }
+                }
+                lineBase += c.counts.total;
+            }
+        } finally {
+            if (pool != this.pool)
+                pool.shutdown();
+        }
+        return counts;
+    }
+
+    /**
+     * Find the position just after the first line terminator at or after
+     * a given position, or the end of the file if there is no such
+     * terminator. As for {@link LineScanner}, a line may be terminated by
+     * LF, CR or CR LF; a CR LF pair is never split.
+     */
+    private long findLineEnd(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n')
+                    return pos + i + 1;
+                if (b == '\r') {
+                    long next = pos + i + 1;
+                    if (i + 1 < n)
+                        return (buf.get(i + 1) == '\n') ? next + 1 : next;
+                    if (next < size) {
+                        ByteBuffer one = ByteBuffer.allocate(1);
+                        if (ch.read(one, next) == 1 && one.get(0) == '\n')
+                            return next + 1;
+                    }
+                    return next;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /** The results for a chunk of the log. */
+    private static class Chunk {
+        Chunk(long offset) {
+            this.offset = offset;
+        }
+
+        void add(String line, long lineNumber, long offset) {
+            int n = unexpected.size();
+            if (n == offsets.length) {
+                lineNumbers = Arrays.copyOf(lineNumbers, n * 2);
+                offsets = Arrays.copyOf(offsets, n * 2);
+            }
+            unexpected.add(line);
+            lineNumbers[n] = lineNumber;
+            offsets[n] = offset;
+        }
+
+        final long offset;
+        final LineCounts counts = new LineCounts();
+        final List<String> unexpected = new ArrayList<>();
+        /** The line numbers and offsets of the unexpected lines, within the chunk. */
+        long[] lineNumbers = new long[16];
+        long[] offsets = new long[16];
+    }
+
+    /** The task to classify the lines in a chunk of the log. */
+    private static class ChunkTask extends RecursiveTask<Chunk> {
+        static final long serialVersionUID = -2416233451207519393L;
+
+        ChunkTask(CombinedMatcher matcher, List<ByteBuffer> segments, long offset, Charset cs,
+                boolean saveUnexpected, boolean stats) {
+            this.matcher = matcher;
+            this.segments = segments;
+            this.offset = offset;
+            this.cs = cs;
+            this.saveUnexpected = saveUnexpected;
+            this.stats = stats;
+        }
+
+        @Override
+        protected Chunk compute() {
+            final Chunk c = new Chunk(offset);
+            LineScanner.Handler h = !saveUnexpected ? null : new LineScanner.Handler() {
+                @Override
+                public void unexpected(String line, long lineNumber, long offset) {
+                    c.add(line, lineNumber, offset);
+                }
+            };
+            LineScanner s = new LineScanner(matcher, cs, h, stats);
+            for (ByteBuffer bytes: segments)
+                s.scan(bytes);
+            s.finish();
+            c.counts.add(s.getCounts());
+            return c;
+        }
+
+        private final CombinedMatcher matcher;
+        /** The bytes of the chunk, in one or more consecutive segments. */
+        private final List<ByteBuffer> segments;
+        private final long offset;
+        private final Charset cs;
+        private final boolean saveUnexpected;
+        private final boolean stats;
+    }
+
+    private static final long MIN_CHUNK_SIZE = 64 * 1024;
+    private static final long MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final CombinedMatcher matcher;
+    /** The shared pool, or null if each scan uses its own pool. */
+    private final ForkJoinPool pool;
+    private final int nThreads;
+    private final boolean stats;
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package buildLogWarnSummary;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index to find the area for a path, given a map from directories to
+ * areas. The area is that of the longest directory containing the path.
+ *
+ * The directories are stored in a trie, with the area for a directory
+ * stored in the node reached by its characters. A path is looked up with
+ * a single walk down the trie, noting the area at each '/' in the path,
+ * without creating any intermediate strings.
+ */
+class AreaIndex {
+    AreaIndex(Map<String, String> areas) {
+        Node b = new Node();
+        for (Map.Entry<String, String> e: areas.entrySet()) {
+            Node n = b;
+            for (char c: e.getKey().toCharArray()) {
+                Node child = n.builder.get(c);
+                if (child == null)
+                    n.builder.put(c, child = new Node());
+                n = child;
+            }
+            n.area = e.getValue();
+        }
+        root = b.freeze();
+    }
+
+    /**
+     * Get the area for a path, as given by the longest directory in the
+     * map that is a parent of the path.
+     * @param path the path, using '/' to separate names
+     * @return the area, or null if there is no such directory
+     */
+    String get(String path) {
+        String area = null;
+        Node n = root;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && n.area != null)
+                area = n.area;
+            n = n.child(c);
+            if (n == null)
+                break;
+        }
+        return area;
+    }
+
+    private static class Node {
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return (i >= 0) ? children[i] : null;
+        }
+
+        /** Convert the children of this node, and their children, to arrays. */
+        Node freeze() {
+            keys = new char[builder.size()];
+            children = new Node[builder.size()];
+            int i = 0;
+            for (Map.Entry<Character, Node> e: builder.entrySet()) {
+                keys[i] = e.getKey();
+                children[i] = e.getValue().freeze();
+                i++;
+            }
+            builder = null;
+            return this;
+        }
+
+        /** The area for the directory ending at this node, or null if none. */
+        String area;
+        /** The chars for the children of this node, in order. */
+        char[] keys;
+        Node[] children;
+        private Map<Character, Node> builder = new TreeMap<>();
+    }
+
+    private final Node root;
+}
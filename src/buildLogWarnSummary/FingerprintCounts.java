@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package buildLogWarnSummary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A map from 64-bit fingerprints to the number of times each has been
+ * added, stored in open-addressed arrays of primitive values. Since 0 is
+ * used to mark empty slots, its count is recorded separately.
+ */
+class FingerprintCounts {
+    /**
+     * Add a number of occurrences of a fingerprint.
+     * @param fp the fingerprint
+     * @param n the number of occurrences
+     */
+    void add(long fp, int n) {
+        if (fp == 0) {
+            zeroCount += n;
+            return;
+        }
+        int i = find(fp);
+        if (keys[i] == 0) {
+            keys[i] = fp;
+            if (++size > keys.length / 2) {
+                resize();
+                i = find(fp);
+            }
+        }
+        counts[i] += n;
+    }
+
+    /**
+     * Check whether a fingerprint has been added.
+     * @param fp the fingerprint
+     * @return true if and only if the fingerprint has been added
+     */
+    boolean contains(long fp) {
+        return (fp == 0) ? (zeroCount > 0) : (keys[find(fp)] != 0);
+    }
+
+    /**
+     * Add all the fingerprints in another map to this one.
+     * @param other the other map
+     */
+    void addAll(FingerprintCounts other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != 0)
+                add(other.keys[i], other.counts[i]);
+        }
+        zeroCount += other.zeroCount;
+    }
+
+    /**
+     * Get the total number of occurrences of the fingerprints in this map
+     * that are not in another map.
+     * @param other the other map, or null, if it is empty
+     * @return the number of occurrences
+     */
+    int countMissing(FingerprintCounts other) {
+        int total = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0 && (other == null || !other.contains(keys[i])))
+                total += counts[i];
+        }
+        if (other == null || other.zeroCount == 0)
+            total += zeroCount;
+        return total;
+    }
+
+    /**
+     * Write the contents of this map, so that they can be read back by
+     * {@link #read}.
+     * @param out the stream to which to write the contents
+     * @throws IOException if an error occurs while writing the contents
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(zeroCount);
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                out.writeLong(keys[i]);
+                out.writeInt(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Read a map written by {@link #write}.
+     * @param in the buffer from which to read the map
+     * @return the map
+     * @throws java.nio.BufferUnderflowException if the buffer does not
+     *      contain a complete map
+     */
+    static FingerprintCounts read(ByteBuffer in) {
+        FingerprintCounts fc = new FingerprintCounts();
+        fc.zeroCount = in.getInt();
+        int n = TablesSnapshot.readCount(in, 12);
+        for (int i = 0; i < n; i++) {
+            long fp = in.getLong();
+            fc.add(fp, in.getInt());
+        }
+        return fc;
+    }
+
+    /** Return the slot for a fingerprint, or the empty slot where it would be added. */
+    private int find(long fp) {
+        int mask = keys.length - 1;
+        int i = (int) (fp ^ (fp >>> 32)) & mask;
+        long k;
+        while ((k = keys[i]) != 0 && k != fp)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = find(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                counts[j] = oldCounts[i];
+            }
+        }
+    }
+
+    private long[] keys = new long[8];
+    private int[] counts = new int[8];
+    private int size;
+    private int zeroCount;
+}
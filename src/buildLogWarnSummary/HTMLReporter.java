@@ -31,8 +31,6 @@ import java.util.Collection;
 import java.util.Date;
 
 import static buildLogWarnSummary.HTMLWriter.*;
-import static buildLogWarnSummary.Reporter.TableType.*;
-import static buildLogWarnSummary.Messages.*;
 
 /**
  *
@@ -99,58 +97,26 @@ public class HTMLReporter extends Reporter {
         out.close();
     }
 
+    /**
+     * Write an index of the tables that will be written, grouped by
+     * {@link TableGroup}, each linking to its table in the report.
+     */
     void writeIndex() throws IOException {
         out.startTag(UL);
-        if (!refTables.isEmpty()) {
-            writeIndexEntryStart("Comparison against reference results");
-            out.startTag(UL);
-            writeIndexEntry(REF_DELTA_LOCNS);
-            out.endTag(UL);
-            writeIndexEntryEnd();
-        }
-
-        if (showLocations) {
-            writeIndexEntryStart("Warnings categorized by location");
-            out.startTag(UL);
-            writeIndexEntry(LOCN_COUNTS_ALPHA);
-            writeIndexEntry(LOCN_COUNTS_FREQ);
-            writeIndexEntry(LOCN_DIR_COUNTS_ALPHA);
-            writeIndexEntry(LOCN_DIR_COUNTS_FREQ);
-            writeIndexEntry(LOCN_EXTN_COUNTS_ALPHA);
-            writeIndexEntry(LOCN_EXTN_COUNTS_FREQ);
-            Collection<Message> unknownLocns = tables.pathTable.get(Message.Location.UNKNOWN);
-            if (unknownLocns != null)
-                writeIndexEntry(LOCN_UNKNOWN);
-            out.endTag(UL);
-            writeIndexEntryEnd();
-        }
-
-        if (showTools) {
-            writeIndexEntryStart("Warnings categorized by tool");
-            out.startTag(UL);
-            writeIndexEntry(TOOL_COUNTS_ALPHA);
-            writeIndexEntry(TOOL_COUNTS_FREQ);
-            out.endTag(UL);
-            writeIndexEntryEnd();
-        }
-
-        if (showKinds) {
-            writeIndexEntryStart("Warnings categorized by kind");
-            out.startTag(UL);
-            writeIndexEntry(KIND_COUNTS_ALPHA);
-            writeIndexEntry(KIND_COUNTS_FREQ);
-            Collection<Message> unknownKinds = tables.messageKindTable.get(Message.Kind.UNKNOWN);
-            if (unknownKinds != null)
-                writeIndexEntry(KIND_UNKNOWN);
-            out.endTag(UL);
-            writeIndexEntryEnd();
+        TableGroup group = null;
+        for (TableType type: getTableTypes()) {
+            if (type.group != group) {
+                if (group != null) {
+                    out.endTag(UL);
+                    writeIndexEntryEnd();
+                }
+                group = type.group;
+                writeIndexEntryStart(group.title);
+                out.startTag(UL);
+            }
+            writeIndexEntry(type);
         }
-
-        if (showAreas) {
-            writeIndexEntryStart("Warnings categorized by area");
-            out.startTag(UL);
-            writeIndexEntry(AREA_COUNTS_ALPHA);
-            writeIndexEntry(AREA_COUNTS_FREQ);
+        if (group != null) {
             out.endTag(UL);
             writeIndexEntryEnd();
         }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogWarnSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static buildLogWarnSummary.Messages.*;
+
+/**
+ * An index to find the first kind of message, in the order given by a set
+ * of tools, that matches a line.
+ *
+ * For each kind, the longest literal string that must appear in any line
+ * matched by its pattern is determined. A single pass over a line with an
+ * Aho-Corasick automaton for all these strings then gives the set of kinds
+ * that might match the line; only these kinds are checked with their
+ * patterns, in the original order. Kinds for which no such string can be
+ * determined are always checked.
+ */
+class KindIndex {
+    KindIndex(Tool[] tools) {
+        List<Message.Kind> list = new ArrayList<>();
+        for (Tool t: tools)
+            list.addAll(t.kinds);
+        kinds = list.toArray(new Message.Kind[list.size()]);
+        always = new long[(kinds.length + 63) / 64];
+
+        Map<String, List<Integer>> literals = new TreeMap<>();
+        for (int i = 0; i < kinds.length; i++) {
+            String lit = getRequiredLiteral(kinds[i].msgPattern.pattern());
+            if (lit == null || lit.isEmpty() || kinds[i].msgPattern.flags() != 0) {
+                set(always, i);
+            } else {
+                List<Integer> l = literals.get(lit);
+                if (l == null)
+                    literals.put(lit, l = new ArrayList<>());
+                l.add(i);
+            }
+        }
+        build(literals);
+    }
+
+    /**
+     * Find the first kind that matches a line.
+     * @param line the line
+     * @return the first kind that matches the line, or null if none
+     */
+    Message.Kind match(String line) {
+        long[] candidates = always.clone();
+        int s = 0;
+        for (int i = 0; i < line.length(); i++) {
+            s = next(s, line.charAt(i));
+            long[] m = masks[s];
+            if (m != null) {
+                for (int w = 0; w < m.length; w++)
+                    candidates[w] |= m[w];
+            }
+        }
+
+        for (int w = 0; w < candidates.length; w++) {
+            long bits = candidates[w];
+            while (bits != 0) {
+                int i = w * 64 + Long.numberOfTrailingZeros(bits);
+                if (kinds[i].matches(line))
+                    return kinds[i];
+                bits &= bits - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the longest string of literal characters that must appear in any
+     * string matched by a regular expression. The expression is analyzed
+     * conservatively: groups, character classes and quantified items are
+     * skipped, and if the expression uses any alternation at the top level,
+     * or any construct that is not understood, no string is returned.
+     * @param regex the regular expression
+     * @return the string, which may be empty, or null if none could be determined
+     */
+    static String getRequiredLiteral(String regex) {
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int n = regex.length();
+        int i = 0;
+        while (i < n) {
+            char c = regex.charAt(i);
+            String lit = null;  // the literal chars matched by the current item, if any
+            int next;
+            switch (c) {
+                case '\\':
+                    if (i + 1 == n)
+                        return null;
+                    char e = regex.charAt(i + 1);
+                    if (e == 'Q') {
+                        int end = regex.indexOf("\\E", i + 2);
+                        if (end == -1)
+                            end = n;
+                        lit = regex.substring(i + 2, end);
+                        next = Math.min(end + 2, n);
+                    } else if ("bBdDsSwW".indexOf(e) >= 0) {
+                        next = i + 2;
+                    } else if (Character.isLetterOrDigit(e)) {
+                        return null;
+                    } else {
+                        lit = String.valueOf(e);
+                        next = i + 2;
+                    }
+                    break;
+
+                case '[':
+                    next = skipClass(regex, i);
+                    if (next < 0)
+                        return null;
+                    break;
+
+                case '(':
+                    if (i + 2 < n && regex.charAt(i + 1) == '?' && regex.charAt(i + 2) != ':')
+                        return null;
+                    next = skipGroup(regex, i);
+                    if (next < 0)
+                        return null;
+                    break;
+
+                case '.': case '^': case '$':
+                    next = i + 1;
+                    break;
+
+                case '|': case ')': case '*': case '+': case '?': case '{':
+                    return null;
+
+                default:
+                    lit = String.valueOf(c);
+                    next = i + 1;
+            }
+
+            char q = (next < n) ? regex.charAt(next) : 0;
+            if (q == '*' || q == '?' || q == '{' || q == '+') {
+                // the item is quantified: if it is a literal, only its last
+                // char is repeated, and the item is only required for '+'
+                if (lit != null && q == '+')
+                    run.append(lit);
+                else if (lit != null && lit.length() > 1)
+                    run.append(lit, 0, lit.length() - 1);
+                if (run.length() > best.length())
+                    best = run.toString();
+                run.setLength(0);
+                if (q == '{') {
+                    next = regex.indexOf('}', next);
+                    if (next == -1)
+                        return null;
+                }
+                next++;
+                if (next < n && (regex.charAt(next) == '?' || regex.charAt(next) == '+'))
+                    next++;
+            } else if (lit != null) {
+                run.append(lit);
+            } else {
+                if (run.length() > best.length())
+                    best = run.toString();
+                run.setLength(0);
+            }
+            i = next;
+        }
+        if (run.length() > best.length())
+            best = run.toString();
+        return best;
+    }
+
+    /** Return the position after a character class, or -1 if not understood. */
+    private static int skipClass(String regex, int i) {
+        int n = regex.length();
+        i++;
+        if (i < n && regex.charAt(i) == '^')
+            i++;
+        if (i < n && regex.charAt(i) == ']')
+            i++;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\')
+                i += 2;
+            else if (c == '[')
+                return -1;
+            else if (c == ']')
+                return i + 1;
+            else
+                i++;
+        }
+        return -1;
+    }
+
+    /** Return the position after a group, or -1 if not understood. */
+    private static int skipGroup(String regex, int i) {
+        int n = regex.length();
+        int depth = 0;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end == -1)
+                        return -1;
+                    i = end + 2;
+                } else
+                    i += 2;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0)
+                    return -1;
+            } else {
+                if (c == '(')
+                    depth++;
+                else if (c == ')' && --depth == 0)
+                    return i + 1;
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Build the Aho-Corasick automaton for a set of literals, each of which
+     * is required by one or more kinds.
+     */
+    private void build(Map<String, List<Integer>> literals) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<long[]> outputs = new ArrayList<>();
+        trie.add(new HashMap<Character, Integer>());
+        outputs.add(null);
+        for (Map.Entry<String, List<Integer>> e: literals.entrySet()) {
+            int s = 0;
+            for (char c: e.getKey().toCharArray()) {
+                Integer t = trie.get(s).get(c);
+                if (t == null) {
+                    t = trie.size();
+                    trie.get(s).put(c, t);
+                    trie.add(new HashMap<Character, Integer>());
+                    outputs.add(null);
+                }
+                s = t;
+            }
+            long[] m = outputs.get(s);
+            if (m == null)
+                outputs.set(s, m = new long[always.length]);
+            for (int k: e.getValue())
+                set(m, k);
+        }
+
+        int size = trie.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        for (int s = 0; s < size; s++) {
+            Map<Character, Integer> t = new TreeMap<>(trie.get(s));
+            keys[s] = new char[t.size()];
+            targets[s] = new int[t.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> e: t.entrySet()) {
+                keys[s][j] = e.getKey();
+                targets[s][j] = e.getValue();
+                j++;
+            }
+        }
+
+        rootNext = new int[ROOT_TABLE_SIZE];
+        for (int j = 0; j < keys[0].length && keys[0][j] < ROOT_TABLE_SIZE; j++)
+            rootNext[keys[0][j]] = targets[0][j];
+
+        // compute the failure links breadth first, so that the link for
+        // each state, and its accumulated outputs, are available before
+        // they are needed by deeper states
+        fail = new int[size];
+        masks = new long[size][];
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (int t: targets[0])
+            queue[tail++] = t;
+        while (head < tail) {
+            int s = queue[head++];
+            long[] m = outputs.get(s);
+            long[] f = masks[fail[s]];
+            if (m != null && f != null) {
+                for (int w = 0; w < m.length; w++)
+                    m[w] |= f[w];
+            }
+            masks[s] = (m != null) ? m : f;
+            for (int j = 0; j < keys[s].length; j++) {
+                int t = targets[s][j];
+                fail[t] = (s == 0) ? 0 : next(fail[s], keys[s][j]);
+                queue[tail++] = t;
+            }
+        }
+    }
+
+    private int next(int s, char c) {
+        while (true) {
+            if (s == 0)
+                return (c < ROOT_TABLE_SIZE) ? rootNext[c] : child(0, c);
+            int t = child(s, c);
+            if (t > 0)
+                return t;
+            s = fail[s];
+        }
+    }
+
+    private int child(int s, char c) {
+        int j = Arrays.binarySearch(keys[s], c);
+        return (j >= 0) ? targets[s][j] : 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i / 64] |= 1L << (i % 64);
+    }
+
+    private static final int ROOT_TABLE_SIZE = 128;
+
+    /** All the kinds, in the order they should be checked. */
+    private final Message.Kind[] kinds;
+    /** The kinds that must always be checked. */
+    private final long[] always;
+
+    /** The transitions from each state, sorted by char. */
+    private char[][] keys;
+    private int[][] targets;
+    /** The transitions from the initial state, for ASCII chars. */
+    private int[] rootNext;
+    private int[] fail;
+    /** The kinds whose literals end at each state, or null if none. */
+    private long[][] masks;
+}
@@ -31,8 +31,13 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Utility to analyze the warnings and other diagnostics generated during a
@@ -146,12 +151,94 @@ public class Main {
                 title = args.next();
             }
         },
+        new Option("-j", true, "number of threads to use to read log files, splitting large files") {
+            @Override
+            void process(String opt, Iterator<String> args) throws Fault {
+                String s = args.next();
+                try {
+                    threads = Integer.parseInt(s);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1)
+                    throw new Fault("bad value for " + opt + ": " + s);
+            }
+        },
+        new Option("-compact", false, "store warnings compactly, to reduce memory usage") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                storage = Tables.Storage.COMPACT;
+            }
+        },
+        new Option("-counts", false, "only count warnings, except those with unknown kinds or locations") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                storage = Tables.Storage.COUNTS;
+            }
+        },
+        new Option("-estimate-unique", false, "estimate the number of unique warnings, using less memory") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                uniqueMode = UniqueCounter.Mode.ESTIMATE;
+            }
+        },
+        new Option("-sections", true, "comma-separated names of the only tables to be computed and reported, such as locn-counts-freq") {
+            @Override
+            void process(String opt, Iterator<String> args) throws Fault {
+                sections = EnumSet.noneOf(Reporter.TableType.class);
+                for (String name: args.next().split(",")) {
+                    try {
+                        sections.add(Reporter.TableType.valueOf(
+                                name.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+                    } catch (IllegalArgumentException e) {
+                        throw new Fault("unknown section for " + opt + ": " + name);
+                    }
+                }
+            }
+        },
         new Option("-r", true, "reference log file(s)") {
             @Override
             void process(String opt, Iterator<String> args) {
                 refFiles.add(new File(args.next()));
             }
         },
+        new Option("-r-snapshot", true, "reference snapshot file, instead of reference log files") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                refSnapshot = new File(args.next());
+            }
+        },
+        new Option("-save-snapshot", true, "save a snapshot of the results for the log files, for use with -r-snapshot") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                saveSnapshot = new File(args.next());
+            }
+        },
+        new Option("-db", true, "directory for a database of warning counts across builds") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                dbDir = new File(args.next());
+            }
+        },
+        new Option("-build", true, "id for this build, to record its warning counts in the database") {
+            @Override
+            void process(String opt, Iterator<String> args) {
+                buildId = args.next();
+            }
+        },
+        new Option("-history", true, "number of previous builds in the database to compare against") {
+            @Override
+            void process(String opt, Iterator<String> args) throws Fault {
+                String s = args.next();
+                try {
+                    historySize = Integer.parseInt(s);
+                } catch (NumberFormatException e) {
+                    historySize = 0;
+                }
+                if (historySize < 1)
+                    throw new Fault("bad value for " + opt + ": " + s);
+            }
+        },
         new Option("<files>", false, "log files to be analyzed") {
             @Override
             boolean matches(String opt) {
@@ -206,15 +293,63 @@ public class Main {
                 return;
         }
 
-        if (!showLocations && !showKinds && !showTools && refFiles.isEmpty()) {
+        if (!showLocations && !showKinds && !showTools && refFiles.isEmpty() && refSnapshot == null) {
             showKinds = true;
             showLocations = true;
             showTools = true;
             showAreas = true;
         }
 
-        Tables ref = new Tables(refFiles);
-        Tables t = new Tables(inFiles);
+        if (refSnapshot != null && !refFiles.isEmpty())
+            throw new Fault("cannot use both -r and -r-snapshot");
+
+        // read any snapshot first, so that any problems are reported
+        // before the logs are read
+        Tables snapshot = (refSnapshot == null) ? null : TablesSnapshot.read(refSnapshot, new Messages());
+
+        if (buildId != null && dbDir == null)
+            throw new Fault("-build requires -db");
+        // the database is kept open, and so locked, from checking the
+        // build id until the record for the build has been added
+        WarningsDatabase db = (dbDir == null) ? null : new WarningsDatabase(dbDir);
+        Tables ref, t;
+        List<WarningsDatabase.Record> history = null;
+        WarningsDatabase.Record current = null;
+        try {
+            if (db != null && buildId != null && db.contains(buildId))
+                throw new Fault("build already recorded in database: " + buildId);
+
+            if (threads > 1) {
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    Messages msgs = new Messages();
+                    Tables.Loader refLoader = new Tables.Loader(refFiles, msgs, storage, uniqueMode, executor);
+                    Tables.Loader inLoader = new Tables.Loader(inFiles, msgs, storage, uniqueMode, executor);
+                    ref = refLoader.get();
+                    t = inLoader.get();
+                } finally {
+                    executor.shutdownNow();
+                }
+            } else {
+                ref = new Tables(refFiles, storage, uniqueMode);
+                t = new Tables(inFiles, storage, uniqueMode);
+            }
+
+            if (snapshot != null)
+                ref = snapshot;
+            if (saveSnapshot != null)
+                TablesSnapshot.write(t, saveSnapshot);
+
+            if (db != null) {
+                history = db.readRecent(historySize);
+                current = WarningsDatabase.Record.of((buildId == null) ? "(this build)" : buildId, t);
+                if (buildId != null)
+                    db.append(current);
+            }
+        } finally {
+            if (db != null)
+                db.close();
+        }
 
 
         Reporter r = createReporter();
@@ -227,6 +362,8 @@ public class Main {
         r.setShowTools(showTools);
         r.setShowAreas(showAreas);
         r.setReference(ref);
+        r.setHistory(history, current);
+        r.setSelectedTables(sections);
         r.report(t);
     }
 
@@ -295,4 +432,13 @@ public class Main {
     boolean showAreas;
     List<File> inFiles = new ArrayList<>();
     List<File> refFiles = new ArrayList<>();
+    File refSnapshot;
+    File saveSnapshot;
+    File dbDir;
+    String buildId;
+    int historySize = 10;
+    Set<Reporter.TableType> sections;
+    int threads = 1;
+    Tables.Storage storage = Tables.Storage.FULL;
+    UniqueCounter.Mode uniqueMode = UniqueCounter.Mode.EXACT;
 }
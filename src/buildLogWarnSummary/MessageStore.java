@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package buildLogWarnSummary;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static buildLogWarnSummary.Messages.*;
+
+/**
+ * A compact store for messages. Each message is identified by an int,
+ * and is stored as the ids of its line, kind and location. Lines and
+ * locations are interned, so that repeated warnings share the same text.
+ * Messages are only created again when they are needed, such as when
+ * they are listed in a report.
+ *
+ * Sets of messages are represented by the ids of their messages, in the
+ * order they were added to the store.
+ */
+class MessageStore {
+    /**
+     * Add a message to the store.
+     * @param m the message
+     * @return the id for the message
+     */
+    int add(Message m) {
+        if (size == lineIds.length) {
+            int newLength = size * 2;
+            lineIds = Arrays.copyOf(lineIds, newLength);
+            kindIds = Arrays.copyOf(kindIds, newLength);
+            locationIds = Arrays.copyOf(locationIds, newLength);
+        }
+        lineIds[size] = intern(lineMap, lines, m.line);
+        kindIds[size] = intern(kindMap, kinds, m.kind);
+        locationIds[size] = (m.location == null) ? -1
+                : intern(locationMap, locations, m.location.path, m.location);
+        return size++;
+    }
+
+    /**
+     * Get a message from the store.
+     * @param id the id of the message
+     * @return the message
+     */
+    Message get(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException(String.valueOf(id));
+        int l = locationIds[id];
+        return new Message(kinds.get(kindIds[id]), lines.get(lineIds[id]),
+                (l == -1) ? null : locations.get(l));
+    }
+
+    /**
+     * Get the number of messages in the store.
+     * @return the number of messages
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of distinct lines in the store.
+     * @return the number of distinct lines
+     */
+    int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Create an empty set of messages in this store.
+     * @return the set
+     */
+    MessageSet newSet() {
+        return new MessageSet();
+    }
+
+    /**
+     * A set of messages in the store, represented by their ids.
+     * Messages are created as the set is iterated.
+     */
+    class MessageSet extends AbstractCollection<Message> {
+        /**
+         * Add a message to the set. Messages must be added in the order
+         * they were added to the store.
+         * @param id the id of the message
+         */
+        void add(int id) {
+            if (count == ids.length)
+                ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = id;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Iterator<Message> iterator() {
+            return new Iterator<Message>() {
+                @Override
+                public boolean hasNext() {
+                    return (index < count);
+                }
+
+                @Override
+                public Message next() {
+                    if (index >= count)
+                        throw new NoSuchElementException();
+                    return get(ids[index++]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                private int index;
+            };
+        }
+
+        private int[] ids = new int[4];
+        private int count;
+    }
+
+    private static <T> int intern(Map<T, Integer> map, List<T> list, T t) {
+        return intern(map, list, t, t);
+    }
+
+    private static <K, T> int intern(Map<K, Integer> map, List<T> list, K key, T t) {
+        Integer i = map.get(key);
+        if (i == null) {
+            map.put(key, i = list.size());
+            list.add(t);
+        }
+        return i;
+    }
+
+    private final Map<String, Integer> lineMap = new HashMap<>();
+    private final List<String> lines = new ArrayList<>();
+    private final Map<Message.Kind, Integer> kindMap = new IdentityHashMap<>();
+    private final List<Message.Kind> kinds = new ArrayList<>();
+    private final Map<String, Integer> locationMap = new HashMap<>();
+    private final List<Message.Location> locations = new ArrayList<>();
+
+    private int[] lineIds = new int[256];
+    private int[] kindIds = new int[256];
+    private int[] locationIds = new int[256];
+    private int size;
+}
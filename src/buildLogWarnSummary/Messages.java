@@ -24,12 +24,19 @@
 package buildLogWarnSummary;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
+ * The rules used to recognize the warnings in a build log, and to classify
+ * them by tool, kind, location and area.
+ *
+ * The rules are set up once, when the class is initialized, and are not
+ * changed after that, so that they can be shared by all instances of the
+ * class, including those used by different threads.
  *
  * @author jjg
  * @author Alexandre Boulgakov
@@ -84,24 +91,16 @@ public class Messages {
 
             Location(String file, String path) {
                 this.file = file;
-                this.path = path.replace("\\", "/");
+                this.path = normalizePath(path);
 
                 if (!path.endsWith(".java")) {
                     this.area = "(Native)";
                 } else if (!path.contains("/")) {
                     this.area = "(Unknown - possibly Swing)";
                 } else {
-                    String prefix = path;
-                    while (this.area == null) {
-                        int end = prefix.lastIndexOf("/");
-                        if (end < 0) {
-                            //area = areas.get("");
-                            this.area = path;
-                            break;
-                        }
-                        prefix = prefix.substring(0, end);
-                        this.area = areas.get(prefix);
-                    }
+                    this.area = areaIndex.get(path);
+                    if (this.area == null)
+                        this.area = path;
                 }
             }
 
@@ -128,13 +127,16 @@ public class Messages {
             static final Location UNKNOWN = new Location("", "");
         }
 
+        Message(Kind kind, String line, Location location) {
+            this.kind = kind;
+            this.line = line;
+            this.location = location;
+        }
+
         Message(Kind kind, String line) {
             this.kind = kind;
             this.line = line;
-            String l = line.trim().replace("\\", "/");
-            Matcher ddm;
-            while ((ddm = dotdot.matcher(l)).matches())
-                l = ddm.group(1) + ddm.group(2);
+            String l = normalizePath(line.trim());
 
             if (kind.hasLocation) {
                 for (Pattern p: kind.tool.locnPatterns) {
@@ -152,7 +154,104 @@ public class Messages {
             return kind + ": " + line;
         }
 
-        private static Pattern dotdot = Pattern.compile("(.*/)[^/.]+/\\.\\./(.*)");
+        /**
+         * Normalize the paths in a string: each '\\' is replaced by '/',
+         * and then each sequence "dir/../", where dir is a nonempty name
+         * containing no '.' and following a '/', is removed repeatedly,
+         * until there are no more such sequences. As with the regular
+         * expression that was previously used for this, a sequence is not
+         * removed if there are line terminators outside of its dir.
+         *
+         * The string is processed in a single pass over its segments,
+         * using a stack of the positions of the segments written so far:
+         * a ".." segment followed by '/' cancels the preceding segment,
+         * if that segment could be removed. The result is the same as
+         * repeatedly removing the last such sequence in the string.
+         * If there is nothing to change, the string itself is returned.
+         */
+        static String normalizePath(String s) {
+            int n = s.length();
+            boolean backslash = false;
+            boolean dotdot = false;
+            int firstTerm = -1, lastTerm = -1;
+            for (int i = 0; i < n; i++) {
+                switch (s.charAt(i)) {
+                    case '\\':
+                        backslash = true;
+                        break;
+                    case '.':
+                        if (i > 0 && i + 2 < n && isSeparator(s.charAt(i - 1))
+                                && s.charAt(i + 1) == '.' && isSeparator(s.charAt(i + 2)))
+                            dotdot = true;
+                        break;
+                    case '\n': case '\r': case '\u0085': case '\u2028': case '\u2029':
+                        if (firstTerm == -1)
+                            firstTerm = i;
+                        lastTerm = i;
+                        break;
+                }
+            }
+
+            if (firstTerm != -1) {
+                // '.' in the original pattern does not match line terminators,
+                // so nothing can be removed unless they are all within a
+                // single dir that can be removed first
+                int start = firstTerm, end = firstTerm;
+                while (start > 0 && !isSeparator(s.charAt(start - 1)))
+                    start--;
+                while (end < n && !isSeparator(s.charAt(end)))
+                    end++;
+                if (start > 0 && end > lastTerm && end + 3 < n
+                        && s.charAt(end + 1) == '.' && s.charAt(end + 2) == '.'
+                        && isSeparator(s.charAt(end + 3)) && !containsDot(s, start, end))
+                    return normalizePath(s.substring(0, start) + s.substring(end + 4));
+                return backslash ? s.replace('\\', '/') : s;
+            }
+            if (!dotdot)
+                return backslash ? s.replace('\\', '/') : s;
+
+            StringBuilder sb = new StringBuilder(n);
+            int[] starts = new int[16];
+            boolean[] removable = new boolean[16];
+            int depth = 0;
+            int start = 0;
+            while (true) {
+                int end = start;
+                while (end < n && !isSeparator(s.charAt(end)))
+                    end++;
+                boolean last = (end == n);
+                if (!last && depth > 0 && removable[depth - 1]
+                        && end - start == 2 && s.startsWith("..", start)) {
+                    sb.setLength(starts[--depth]);
+                } else {
+                    if (depth == starts.length) {
+                        starts = Arrays.copyOf(starts, depth * 2);
+                        removable = Arrays.copyOf(removable, depth * 2);
+                    }
+                    starts[depth] = sb.length();
+                    removable[depth] = (depth > 0 && end > start && !containsDot(s, start, end));
+                    depth++;
+                    sb.append(s, start, end);
+                    if (last)
+                        break;
+                    sb.append('/');
+                }
+                start = end + 1;
+            }
+            return sb.toString();
+        }
+
+        private static boolean isSeparator(char c) {
+            return (c == '/' || c == '\\');
+        }
+
+        private static boolean containsDot(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (s.charAt(i) == '.')
+                    return true;
+            }
+            return false;
+        }
 
         String line;
         Location location;
@@ -160,7 +259,7 @@ public class Messages {
     }
 
     boolean isWarning(String line) {
-        if (!warningPattern.matcher(line).matches())
+        if (!containsWarning(line) || !warningPattern.matcher(line).matches())
             return false;
 
         for (Pattern p: notWarningPatterns) {
@@ -171,8 +270,30 @@ public class Messages {
         return true;
     }
 
-    Pattern warningPattern = Pattern.compile("(?i).*\\bwarning\\b.*");
-    Pattern[] notWarningPatterns = {
+    /**
+     * Check whether a line contains "warning", ignoring case, as required by
+     * {@link #warningPattern}. This is much cheaper than the pattern, and
+     * rejects most lines in a log without using it. As for the pattern,
+     * only ASCII letters are compared without regard to case.
+     */
+    static boolean containsWarning(String line) {
+        int last = line.length() - WARNING.length();
+        for (int i = 0; i <= last; i++) {
+            if ((line.charAt(i) | 0x20) != 'w')
+                continue;
+            int j = 1;
+            while (j < WARNING.length() && (line.charAt(i + j) | 0x20) == WARNING.charAt(j))
+                j++;
+            if (j == WARNING.length())
+                return true;
+        }
+        return false;
+    }
+
+    private static final String WARNING = "warning";
+
+    static final Pattern warningPattern = Pattern.compile("(?i).*\\bwarning\\b.*");
+    static final Pattern[] notWarningPatterns = {
         Pattern.compile(" *(\\[[^ ]+\\])? *[0-9]+ warning(s?|\\(s\\))"),
         Pattern.compile(" *(\\[[^ ]+\\])? *[0-9]+ Warning\\(s\\) detected\\."),
         Pattern.compile(".*warning[^. /\\\\]*\\.(gif|png).*"),
@@ -183,14 +304,8 @@ public class Messages {
     };
 
     Message getMessage(String line) {
-        for (Tool t: tools) {
-            for (Message.Kind k: t.kinds) {
-                if (k.matches(line)) {
-                    return new Message(k, line);
-                }
-            }
-        }
-        return null;
+        Message.Kind k = kindIndex.match(line);
+        return (k == null) ? null : new Message(k, line);
     }
 
     static class Tool implements Comparable<Tool> {
@@ -222,7 +337,7 @@ public class Messages {
         }
     }
 
-    Tool[] tools = {
+    static final Tool[] tools = {
         new Tool("adlc") {
             {
                 kind(false, "ASSERT is undefined, assertions disabled\\.");
@@ -785,8 +900,13 @@ public class Messages {
         }
     };
 
-    static HashMap<String, String> areas = new HashMap<>();
-    {
+    /** An index of the kinds of all the tools, in order. */
+    static final KindIndex kindIndex = new KindIndex(tools);
+
+    private static final HashMap<String, String> areas = new HashMap<>();
+    /** An index of {@link #areas}, to find the area for a path. */
+    static final AreaIndex areaIndex;
+    static {
         areas.put("build/tools", "Build Tools");
 
         areas.put("com/sun/crypto", "Security");
@@ -891,5 +1011,7 @@ public class Messages {
         areas.put("sun/misc", "sun.misc");
 
         areas.put("javax/accessibility", "Accessibility");
+
+        areaIndex = new AreaIndex(areas);
     }
 }
@@ -25,48 +25,64 @@ package buildLogWarnSummary;
 
 import java.util.regex.Pattern;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import static buildLogWarnSummary.Messages.*;
 import static buildLogWarnSummary.Reporter.TableType.*;
 
 public abstract class Reporter {
+    /** The groups of related tables in a report. */
+    protected enum TableGroup {
+        REFERENCE("Comparison against reference results"),
+        HISTORY("Comparison against previous builds"),
+        LOCATIONS("Warnings categorized by location"),
+        TOOLS("Warnings categorized by tool"),
+        KINDS("Warnings categorized by kind"),
+        AREAS("Warnings categorized by area");
+        TableGroup(String title) {
+            this.title = title;
+        }
+        final String title;
+    }
+
     protected enum TableType {
-        REF_DELTA_LOCNS("New warnings not found in reference files"),
-        LOCN_COUNTS_ALPHA("Warning counts, sorted alphabetically by location"),
-        LOCN_COUNTS_FREQ("Warning counts, sorted by frequency of location"),
-        LOCN_DIR_COUNTS_ALPHA("Warning counts, sorted alphabetically by location directory"),
-        LOCN_DIR_COUNTS_FREQ("Warning counts, sorted by frequency of location directory"),
-        LOCN_EXTN_COUNTS_ALPHA("Warning counts, sorted alphabetically by location extension"),
-        LOCN_EXTN_COUNTS_FREQ("Warning counts, sorted by frequency of location extension"),
-        LOCN_UNKNOWN("Warnings with unrecognized locations"),
-        KIND_COUNTS_ALPHA("Warning counts, sorted alphabetically by kind"),
-        KIND_COUNTS_FREQ("Warning counts, sorted by frequency of kind"),
-        KIND_UNKNOWN("Warnings with unrecognized kinds"),
-        TOOL_COUNTS_ALPHA("Warning counts, sorted alphabetically by tool"),
-        TOOL_COUNTS_FREQ("Warning counts, sorted by frequency of tool"),
-        AREA_COUNTS_ALPHA("Warning counts, sorted alphabetically by area"),
-        AREA_COUNTS_FREQ("Warning counts, sorted by frequency of area");
-        TableType(String title) {
+        REF_DELTA_LOCNS(TableGroup.REFERENCE, "New warnings not found in reference files"),
+        BUILD_NEW_LOCNS(TableGroup.HISTORY, "Locations with warnings in this build but not the previous build"),
+        BUILD_FIXED_LOCNS(TableGroup.HISTORY, "Locations with warnings in the previous build but not this build"),
+        BUILD_TOP_GROWERS(TableGroup.HISTORY, "Locations with the largest increase in warnings over recent builds"),
+        LOCN_COUNTS_ALPHA(TableGroup.LOCATIONS, "Warning counts, sorted alphabetically by location"),
+        LOCN_COUNTS_FREQ(TableGroup.LOCATIONS, "Warning counts, sorted by frequency of location"),
+        LOCN_DIR_COUNTS_ALPHA(TableGroup.LOCATIONS, "Warning counts, sorted alphabetically by location directory"),
+        LOCN_DIR_COUNTS_FREQ(TableGroup.LOCATIONS, "Warning counts, sorted by frequency of location directory"),
+        LOCN_EXTN_COUNTS_ALPHA(TableGroup.LOCATIONS, "Warning counts, sorted alphabetically by location extension"),
+        LOCN_EXTN_COUNTS_FREQ(TableGroup.LOCATIONS, "Warning counts, sorted by frequency of location extension"),
+        LOCN_UNKNOWN(TableGroup.LOCATIONS, "Warnings with unrecognized locations"),
+        KIND_COUNTS_ALPHA(TableGroup.KINDS, "Warning counts, sorted alphabetically by kind"),
+        KIND_COUNTS_FREQ(TableGroup.KINDS, "Warning counts, sorted by frequency of kind"),
+        KIND_UNKNOWN(TableGroup.KINDS, "Warnings with unrecognized kinds"),
+        TOOL_COUNTS_ALPHA(TableGroup.TOOLS, "Warning counts, sorted alphabetically by tool"),
+        TOOL_COUNTS_FREQ(TableGroup.TOOLS, "Warning counts, sorted by frequency of tool"),
+        AREA_COUNTS_ALPHA(TableGroup.AREAS, "Warning counts, sorted alphabetically by area"),
+        AREA_COUNTS_FREQ(TableGroup.AREAS, "Warning counts, sorted by frequency of area");
+        TableType(TableGroup group, String title) {
+            this.group = group;
             this.title = title;
         }
+        final TableGroup group;
         final String title;
     }
 
     protected Tables tables;
     protected Tables refTables;
-    protected Map<String,Collection<String>> locnDeltas;
     protected File outFile;
     protected String title;
     protected boolean showLocations;
@@ -74,6 +90,12 @@ public abstract class Reporter {
     protected boolean showTools;
     protected boolean showAreas;
     protected Tables referenceTables;
+    protected List<WarningsDatabase.Record> history;
+    protected WarningsDatabase.Record currentBuild;
+    /** The tables to be written, or null to write all the tables that are enabled. */
+    protected Set<TableType> selectedTables;
+    /** The tables to be written, determined when first needed. */
+    private List<TableType> tableTypes;
 
 
     public void setOutput(File file) {
@@ -104,11 +126,28 @@ public abstract class Reporter {
         this.refTables = refTables;
     }
 
+    /**
+     * Select the tables to be written. Only the selected tables, out of
+     * those that are enabled, are computed and written.
+     * @param types the tables, or null to write all the tables that are enabled
+     */
+    void setSelectedTables(Set<TableType> types) {
+        this.selectedTables = types;
+    }
+
+    /**
+     * Set the records for recent builds, to be compared with the current build.
+     * @param history the records for recent builds, oldest first
+     * @param current the record for the current build
+     */
+    void setHistory(List<WarningsDatabase.Record> history, WarningsDatabase.Record current) {
+        this.history = history;
+        this.currentBuild = current;
+    }
+
     public void report(Tables t) throws IOException {
         this.tables = t;
-//        if (refTables != null) {
-//            locnDeltas = getDifference(tables.getLocationMap(), refTables.getLocationMap());
-//        }
+        tableTypes = null;
 
         startReport();
 
@@ -119,50 +158,156 @@ public abstract class Reporter {
             writeTableHead("Reference files analyzed");
             writeList(refTables.files);
             writeTable(refTables.getStatistics());
-//            writeTable(REF_DELTA_LOCNS, count(locnDeltas));
         }
 
-        if (showLocations) {
-            Map<Message.Location,Integer> locationCountMap = count(t.pathTable);
-            writeTable(LOCN_COUNTS_ALPHA, locationCountMap);
-            writeTable(LOCN_COUNTS_FREQ, flip(locationCountMap, decreasing));
+        if (history != null && !history.isEmpty()) {
+            writeTableHead("Previous builds compared");
+            List<String> ids = new ArrayList<>();
+            for (WarningsDatabase.Record r: history)
+                ids.add(r.id);
+            writeList(ids);
+        }
 
-            Map<String,Integer> locationDirCountMap = count(byDirectory(t.pathTable));
-            writeTable(LOCN_DIR_COUNTS_ALPHA, locationDirCountMap);
-            writeTable(LOCN_DIR_COUNTS_FREQ, flip(locationDirCountMap, decreasing));
+        for (TableType type: getTableTypes())
+            writeTable(type);
 
-            Map<String,Integer> locationExtnCountMap = count(byExtension(t.pathTable));
-            writeTable(LOCN_EXTN_COUNTS_ALPHA, locationExtnCountMap);
-            writeTable(LOCN_EXTN_COUNTS_FREQ, flip(locationExtnCountMap, decreasing));
+        endReport();
+    }
 
-            Collection<Message> unknownLocns = t.pathTable.get(Message.Location.UNKNOWN);
-            if (unknownLocns != null)
-                writeList(LOCN_UNKNOWN, unknownLocns);
-        }
+    /**
+     * Get the tables to be written, in order. These are the tables that are
+     * enabled, and if any tables have been selected, that are selected.
+     * @return the tables
+     */
+    protected List<TableType> getTableTypes() {
+        if (tableTypes != null)
+            return tableTypes;
+
+        List<TableType> list = new ArrayList<>();
+        if (!refTables.isEmpty())
+            add(list, REF_DELTA_LOCNS);
 
-        if (showTools) {
-            Map<Tool,Integer> toolCountMap = count(t.toolTable);
-            writeTable(TOOL_COUNTS_ALPHA, toolCountMap);
-            writeTable(TOOL_COUNTS_FREQ, flip(toolCountMap, decreasing));
+        if (history != null && !history.isEmpty())
+            add(list, BUILD_NEW_LOCNS, BUILD_FIXED_LOCNS, BUILD_TOP_GROWERS);
+
+        if (showLocations) {
+            add(list, LOCN_COUNTS_ALPHA, LOCN_COUNTS_FREQ,
+                    LOCN_DIR_COUNTS_ALPHA, LOCN_DIR_COUNTS_FREQ,
+                    LOCN_EXTN_COUNTS_ALPHA, LOCN_EXTN_COUNTS_FREQ);
+            if (tables.getUnknownLocations() != null)
+                add(list, LOCN_UNKNOWN);
         }
 
+        if (showTools)
+            add(list, TOOL_COUNTS_ALPHA, TOOL_COUNTS_FREQ);
+
         if (showKinds) {
-            Map<Message.Kind,Integer> typeCountMap = count(t.messageKindTable);
-            writeTableRows(KIND_COUNTS_ALPHA, getKindRows1(typeCountMap.entrySet()));
-            writeTableRows(KIND_COUNTS_FREQ, getKindRows2(flip(typeCountMap, decreasing)));
+            add(list, KIND_COUNTS_ALPHA, KIND_COUNTS_FREQ);
+            if (tables.getUnknownKinds() != null)
+                add(list, KIND_UNKNOWN);
+        }
+
+        if (showAreas)
+            add(list, AREA_COUNTS_ALPHA, AREA_COUNTS_FREQ);
+
+        return tableTypes = list;
+    }
 
-            Collection<Message> unknownTypes = t.messageKindTable.get(Message.Kind.UNKNOWN);
-            if (unknownTypes != null)
-                writeList(KIND_UNKNOWN, unknownTypes);
+    private void add(List<TableType> list, TableType... types) {
+        for (TableType type: types) {
+            if (selectedTables == null || selectedTables.contains(type))
+                list.add(type);
         }
+    }
+
+    /**
+     * Compute and write a table. The counts for each table are derived
+     * from those computed by the tables in a single pass over the messages.
+     */
+    protected void writeTable(TableType type) throws IOException {
+        switch (type) {
+            case REF_DELTA_LOCNS:
+                writeTable(type, tables.getNewLocationCounts(refTables));
+                break;
+
+            case BUILD_NEW_LOCNS:
+                writeTable(type, getMissing(currentBuild.locations, getPreviousBuild().locations));
+                break;
+
+            case BUILD_FIXED_LOCNS:
+                writeTable(type, getMissing(getPreviousBuild().locations, currentBuild.locations));
+                break;
+
+            case BUILD_TOP_GROWERS: {
+                Map<String,Integer> growth = getGrowth(history.get(0).locations, currentBuild.locations);
+                List<Map.Entry<Integer,String>> growers = new ArrayList<>(flip(growth, decreasing));
+                writeTable(type, growers.subList(0, Math.min(growers.size(), MAX_GROWERS)));
+                break;
+            }
+
+            case LOCN_COUNTS_ALPHA:
+                writeTable(type, tables.getLocationCounts());
+                break;
+
+            case LOCN_COUNTS_FREQ:
+                writeTable(type, flip(tables.getLocationCounts(), decreasing));
+                break;
+
+            case LOCN_DIR_COUNTS_ALPHA:
+                writeTable(type, tables.getDirectoryCounts());
+                break;
+
+            case LOCN_DIR_COUNTS_FREQ:
+                writeTable(type, flip(tables.getDirectoryCounts(), decreasing));
+                break;
 
-        if (showAreas) {
-            Map<String,Integer> areaCountMap = count(t.areaTable);
-            writeTable(AREA_COUNTS_ALPHA, areaCountMap);
-            writeTable(AREA_COUNTS_FREQ, flip(areaCountMap, decreasing));
+            case LOCN_EXTN_COUNTS_ALPHA:
+                writeTable(type, tables.getExtensionCounts());
+                break;
+
+            case LOCN_EXTN_COUNTS_FREQ:
+                writeTable(type, flip(tables.getExtensionCounts(), decreasing));
+                break;
+
+            case LOCN_UNKNOWN:
+                writeList(type, tables.getUnknownLocations());
+                break;
+
+            case TOOL_COUNTS_ALPHA:
+                writeTable(type, tables.getToolCounts());
+                break;
+
+            case TOOL_COUNTS_FREQ:
+                writeTable(type, flip(tables.getToolCounts(), decreasing));
+                break;
+
+            case KIND_COUNTS_ALPHA:
+                writeTableRows(type, getKindRows1(tables.getKindCounts().entrySet()));
+                break;
+
+            case KIND_COUNTS_FREQ:
+                writeTableRows(type, getKindRows2(flip(tables.getKindCounts(), decreasing)));
+                break;
+
+            case KIND_UNKNOWN:
+                writeList(type, tables.getUnknownKinds());
+                break;
+
+            case AREA_COUNTS_ALPHA:
+                writeTable(type, tables.getAreaCounts());
+                break;
+
+            case AREA_COUNTS_FREQ:
+                writeTable(type, flip(tables.getAreaCounts(), decreasing));
+                break;
+
+            default:
+                throw new IllegalArgumentException(type.toString());
         }
+    }
 
-        endReport();
+    private WarningsDatabase.Record getPreviousBuild() {
+        return history.get(history.size() - 1);
     }
 
     private Collection<? extends Collection<?>> getKindRows1(Collection<? extends Map.Entry<Message.Kind,Integer>> entries) throws IOException {
@@ -236,112 +381,30 @@ public abstract class Reporter {
 //    protected abstract void writeTable(Collection<? extends Map.Entry<?,?>> entries) throws IOException;
     protected abstract void writeTableRows(Collection<? extends Collection<?>> rows) throws IOException;
 
-    Map<String,Collection<String>> getDifference(
-            Map<String, Collection<String>> a,
-            Map<String, Collection<String>> b) {
-        Map<String,Collection<String>> results = new LinkedHashMap<>();
-        for (Map.Entry<String,Collection<String>> e: a.entrySet()) {
-            Collection<String> d = getDifference(e.getValue(), b.get(e.getKey()));
-            if (d != null)
-                results.put(e.getKey(), d);
-        }
-        return results;
-    }
-
-    /* return strings in a, which are not in b, allowing for differences in coord info */
-    Collection<String> getDifference(Collection<String> a, Collection<String> b) {
-        if (b == null)
-            return a;
-
-        /* create a normalized version of b, with all digits removed. */
-        Collection<String> nb = new HashSet<>();
-        for (String s: b)
-            nb.add(s.replaceAll("[0-9]+", ""));
-
-        /* build list by comparing normalized strings in a against normalized set b */
-        Collection<String> results = null;
-        for (String s: a) {
-            if (!nb.contains(s.replaceAll("[0-9]+", ""))) {
-                if (results == null)
-                    results = new ArrayList<>();
-                results.add(s);
-            }
-        }
-
-        return results;
-    }
-
-//    Collection<String> getDifference(Collection<String> a, Collection<String> b) {
-//        if (b == null)
-//            return a;
-//
-//        Collection<String> results = null;
-//    nextEntry:
-//        for (String ae : a) {
-//            if (!containsIgnoreLine(b, ae)) {
-//                if (results == null)
-//                    results = new ArrayList<String>();
-//                results.add(ae);
-//            }
-//        }
-//        return results;
-//    }
-//
-//    boolean containsIgnoreLine(Collection<String> c, String s) {
-//        if (c.contains(s))
-//            return true;
-//        String sNoLine = removeLine(s);
-//        for (String cs: c) {
-//            if (removeLine(cs).equals(sNoLine))
-//                return true;
-//        }
-//        return false;
-//    }
-//
-//    String removeLine(String warning) {
-//        Matcher m = ignoreLine.matcher(warning);
-//        if (m.matches())
-//            return m.group(1) + m.group(2);
-//        else
-//            return warning;
-//    }
-//
-//    private final Pattern ignoreLine = Pattern.compile("([^:]+:)[0-9:]+:(.*)");
-
-    <T> Map<String,Collection<T>> byExtension(Map<Message.Location,Collection<T>> map) {
-        Map<String,Collection<T>> results = new TreeMap<>();
-        for (Map.Entry<Message.Location,Collection<T>> e: map.entrySet()) {
-            String extn = e.getKey().getExtension();
-            Collection<T> dest = results.get(extn);
-            if (dest == null) {
-                dest = new LinkedHashSet<>();
-                results.put(extn, dest);
-            }
-            dest.addAll(e.getValue());
+    /** Return the entries in a, whose keys are not in b. */
+    <K> Map<K, Integer> getMissing(Map<K, Integer> a, Map<K, Integer> b) {
+        Map<K,Integer> results = new TreeMap<>();
+        for (Map.Entry<K,Integer> e: a.entrySet()) {
+            if (!b.containsKey(e.getKey()))
+                results.put(e.getKey(), e.getValue());
         }
         return results;
     }
 
-    <T> Map<String,Collection<T>> byDirectory(Map<Message.Location,Collection<T>> map) {
-        Map<String,Collection<T>> results = new TreeMap<>();
-        for (Map.Entry<Message.Location,Collection<T>> e: map.entrySet()) {
-            String dir = e.getKey().getPathDirectory();
-            Collection<T> dest = results.get(dir);
-            if (dest == null) {
-                dest = new ArrayList<>();
-                results.put(dir, dest);
-            }
-            dest.addAll(e.getValue());
+    /** Return the increase in the count for each key from a to b, if positive. */
+    <K> Map<K, Integer> getGrowth(Map<K, Integer> a, Map<K, Integer> b) {
+        Map<K,Integer> results = new TreeMap<>();
+        for (Map.Entry<K,Integer> e: b.entrySet()) {
+            Integer prev = a.get(e.getKey());
+            int growth = e.getValue() - (prev == null ? 0 : prev);
+            if (growth > 0)
+                results.put(e.getKey(), growth);
         }
         return results;
     }
 
-    <K> Map<K, Integer> count(Map<K,? extends Collection<?>> map) {
-        Map<K,Integer> results = new TreeMap<>();
-        for (Map.Entry<K,? extends Collection<?>> e: map.entrySet())
-            results.put(e.getKey(), e.getValue().size());
-        return results;
-    }
+    /** The maximum number of entries in the table of top growers. */
+    private static final int MAX_GROWERS = 25;
 
     <K,V> Collection<? extends Map.Entry<V,K>> flip(Map<K,V> map, Comparator<Map.Entry<V,?>> c) {
         List<Map.Entry<V,K>> result = new ArrayList<>();
@@ -24,31 +24,270 @@
 package buildLogWarnSummary;
 
 import java.io.BufferedReader;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static buildLogWarnSummary.Messages.*;
 
 public final class Tables {
-    public Tables() { }
+    /**
+     * The ways in which the messages found in the logs may be stored.
+     */
+    enum Storage {
+        /** Each message is stored as a separate object. */
+        FULL,
+        /**
+         * Messages are stored in a {@link MessageStore}, in which the text
+         * of repeated warnings is shared, and each message is represented
+         * by an int.
+         */
+        COMPACT,
+        /**
+         * Only the number of messages for each kind, location, directory,
+         * extension, tool and area is kept, except for messages with
+         * unknown kinds or locations, which are stored so that they can
+         * be listed.
+         */
+        COUNTS
+    }
+
+    public Tables() {
+        this(new Messages(), Storage.FULL, UniqueCounter.Mode.EXACT);
+    }
 
     public Tables(Iterable<File> files) throws IOException {
+        this(files, Storage.FULL, UniqueCounter.Mode.EXACT);
+    }
+
+    Tables(Iterable<File> files, Storage storage, UniqueCounter.Mode uniqueMode) throws IOException {
+        this(new Messages(), storage, uniqueMode);
         for (File f: files) {
             this.files.add(f);
             read(f);
         }
     }
 
+    Tables(Messages msgs, Storage storage, UniqueCounter.Mode uniqueMode) {
+        this.msgs = msgs;
+        this.storage = storage;
+        store = (storage == Storage.COMPACT) ? new MessageStore() : null;
+        uniqueWarnings = UniqueCounter.create(uniqueMode);
+    }
+
+    /**
+     * Reads a set of files in parallel, using a given executor. Files larger
+     * than a certain size are split into ranges of lines, if the charset
+     * allows it; each file or range is read into its own partial table.
+     * The partial tables are merged in the order in which the files were
+     * given, so that the result is the same as if the files had been read
+     * one after the other by {@link #Tables(Iterable)}: that is, the tables
+     * and the number of lines read are the same, and any diagnostics are
+     * saved, and reported in the same order as each partial table is merged.
+     */
+    static class Loader {
+        /**
+         * Start reading a set of files.
+         * @param files the files to be read
+         * @param msgs the messages used to classify the lines in the files;
+         *      these may be shared with other loaders
+         * @param storage the way in which to store the messages
+         * @param uniqueMode the way in which to count the unique warnings
+         * @param executor the executor on which to read the files
+         * @throws IOException if an error occurs while splitting a file into ranges
+         */
+        Loader(Iterable<File> files, final Messages msgs, final Storage storage,
+                final UniqueCounter.Mode uniqueMode, ExecutorService executor) throws IOException {
+            this.msgs = msgs;
+            this.storage = storage;
+            this.uniqueMode = uniqueMode;
+            boolean split = canSplit(Charset.defaultCharset());
+            for (File f: files) {
+                if (split && f.length() > CHUNK_SIZE)
+                    addRanges(f);
+                else
+                    ranges.add(new Range(f, 0, -1));
+            }
+            for (final Range r: ranges) {
+                r.part = executor.submit(new Callable<Tables>() {
+                    @Override
+                    public Tables call() throws IOException {
+                        Tables t = new Tables(msgs, storage, uniqueMode);
+                        t.log = new ArrayList<>();
+                        try (BufferedReader in = r.open()) {
+                            t.read(in);
+                        }
+                        return t;
+                    }
+                });
+            }
+        }
+
+        /**
+         * Wait for all the files to be read, and return the merged table.
+         * @return the merged table
+         * @throws IOException if an error occurred while reading any file
+         */
+        Tables get() throws IOException {
+            Tables result = new Tables(msgs, storage, uniqueMode);
+            boolean stopped = false;
+            for (Range r: ranges) {
+                if (r.start == 0) {
+                    result.files.add(r.file);
+                    result.log("read " + r.file);
+                    stopped = false;
+                } else if (stopped) {
+                    r.part.cancel(true);
+                    continue;
+                }
+
+                Tables part = get(r.part);
+
+                // The partial table was read as if it were at the beginning
+                // of the first file; if problems have already been reported,
+                // a serial read might have stopped earlier, in which case the
+                // range is read again, directly into the merged table.
+                int prev = result.unmatchedMessages + result.unmatchedLocations;
+                if (prev > 0 && prev + part.unmatchedMessages + part.unmatchedLocations > MAX_UNMATCHED) {
+                    try (BufferedReader in = r.open()) {
+                        result.read(in);
+                    }
+                } else
+                    result.merge(part);
+
+                // A serial read stops reading a file as soon as there are
+                // too many problems; if so, skip the rest of the file.
+                stopped = (result.unmatchedMessages + result.unmatchedLocations > MAX_UNMATCHED);
+            }
+            return result;
+        }
+
+        private Tables get(Future<Tables> f) throws IOException {
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof IOException)
+                    throw (IOException) t;
+                else if (t instanceof RuntimeException)
+                    throw (RuntimeException) t;
+                else if (t instanceof Error)
+                    throw (Error) t;
+                else
+                    throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * Split a file into ranges of about {@link #CHUNK_SIZE} bytes,
+         * each ending just after a newline, or at the end of the file.
+         */
+        private void addRanges(File f) throws IOException {
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                long size = ch.size();
+                long start = 0;
+                while (start < size) {
+                    long end = findLineEnd(ch, Math.min(start + CHUNK_SIZE, size), size);
+                    ranges.add(new Range(f, start, end));
+                    start = end;
+                }
+            }
+        }
+
+        private long findLineEnd(FileChannel ch, long pos, long size) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            while (pos < size) {
+                buf.clear();
+                int n = ch.read(buf, pos);
+                if (n <= 0)
+                    break;
+                for (int i = 0; i < n; i++) {
+                    if (buf.get(i) == '\n')
+                        return pos + i + 1;
+                }
+                pos += n;
+            }
+            return size;
+        }
+
+        /**
+         * Determine whether files in a given charset can be split into
+         * ranges at newline bytes, and each range decoded separately.
+         */
+        static boolean canSplit(Charset cs) {
+            if (cs.equals(StandardCharsets.UTF_8))
+                return true;
+            return cs.canEncode()
+                    && cs.newEncoder().maxBytesPerChar() == 1
+                    && Arrays.equals("\n".getBytes(cs), new byte[] { '\n' });
+        }
+
+        /** A file, or a range of lines within a file, to be read. */
+        private static class Range {
+            /**
+             * Create a range.
+             * @param file the file
+             * @param start the position of the first byte of the range
+             * @param end the position after the last byte of the range,
+             *      or -1 for the whole file
+             */
+            Range(File file, long start, long end) {
+                this.file = file;
+                this.start = start;
+                this.end = end;
+            }
+
+            BufferedReader open() throws IOException {
+                if (end == -1)
+                    return new BufferedReader(new FileReader(file));
+
+                try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer bytes = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    CharBuffer chars = Charset.defaultCharset().newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                            .decode(bytes);
+                    return new BufferedReader(new CharArrayReader(chars.array(),
+                            chars.arrayOffset() + chars.position(), chars.remaining()));
+                }
+            }
+
+            final File file;
+            final long start;
+            final long end;
+            Future<Tables> part;
+        }
+
+        private static final long CHUNK_SIZE = 4 * 1024 * 1024;
+
+        private final Messages msgs;
+        private final Storage storage;
+        private final UniqueCounter.Mode uniqueMode;
+        private final List<Range> ranges = new ArrayList<>();
+    }
+
     boolean isEmpty() {
         return files.isEmpty();
     }
@@ -57,7 +296,10 @@ public final class Tables {
         Map<String,Integer> stats = new LinkedHashMap<>();
         stats.put("total lines read", lines);
         stats.put("total warnings found", warnings);
-        stats.put("unique warnings found", uniqueWarnings.size());
+        stats.put("unique warnings found (" + uniqueWarnings.getMode().description + ")",
+                (int) uniqueWarnings.count());
+        stats.put("classification cache hits", cacheHits);
+        stats.put("classification cache misses", cacheMisses);
         return stats;
     }
 
@@ -65,8 +307,111 @@ public final class Tables {
         return messageKindTable;
     }
 
+    Map<Message.Kind, Integer> getKindCounts() {
+        computeCounts();
+        return kindCounts;
+    }
+
+    Map<Message.Location, Integer> getLocationCounts() {
+        computeCounts();
+        return locationCounts;
+    }
+
+    Map<String, Integer> getDirectoryCounts() {
+        computeCounts();
+        return directoryCounts;
+    }
+
+    Map<String, Integer> getExtensionCounts() {
+        computeCounts();
+        return extensionCounts;
+    }
+
+    Map<Tool, Integer> getToolCounts() {
+        computeCounts();
+        return toolCounts;
+    }
+
+    Map<String, Integer> getAreaCounts() {
+        computeCounts();
+        return areaCounts;
+    }
+
+    /**
+     * Compute all the tables of counts from the tables of messages, in a
+     * single pass over each table, if they are not already up to date.
+     * The counts are kept up to date as messages are added when only
+     * counts are stored.
+     */
+    private void computeCounts() {
+        if (storage == Storage.COUNTS || countsValid)
+            return;
+
+        kindCounts.clear();
+        locationCounts.clear();
+        directoryCounts.clear();
+        extensionCounts.clear();
+        toolCounts.clear();
+        areaCounts.clear();
+
+        for (Map.Entry<Message.Kind, Collection<Message>> e: messageKindTable.entrySet())
+            kindCounts.put(e.getKey(), e.getValue().size());
+        for (Map.Entry<Message.Location, Collection<Message>> e: pathTable.entrySet()) {
+            Message.Location l = e.getKey();
+            int n = e.getValue().size();
+            locationCounts.put(l, n);
+            increment(directoryCounts, l.getPathDirectory(), n);
+            increment(extensionCounts, l.getExtension(), n);
+        }
+        for (Map.Entry<Tool, Collection<Message>> e: toolTable.entrySet())
+            toolCounts.put(e.getKey(), e.getValue().size());
+        for (Map.Entry<String, Collection<Message>> e: areaTable.entrySet())
+            areaCounts.put(e.getKey(), e.getValue().size());
+
+        countsValid = true;
+    }
+
+    /**
+     * Get the number of warnings at each location that are not found at
+     * the same location in a set of reference tables. Warnings are compared
+     * ignoring any digits, so that warnings that have just moved within a
+     * file are not reported. Locations with no new warnings are omitted.
+     * @param ref the reference tables
+     * @return the number of new warnings at each location
+     */
+    Map<Message.Location, Integer> getNewLocationCounts(Tables ref) {
+        Map<Message.Location, Integer> results = new TreeMap<>();
+        for (Map.Entry<Message.Location, FingerprintCounts> e: locationFingerprints.entrySet()) {
+            int n = e.getValue().countMissing(ref.locationFingerprints.get(e.getKey()));
+            if (n > 0)
+                results.put(e.getKey(), n);
+        }
+        return results;
+    }
+
+    /**
+     * Get the messages whose location is {@link Message.Location#UNKNOWN}.
+     * @return the messages, or null if there are none
+     */
+    Collection<Message> getUnknownLocations() {
+        return pathTable.get(Message.Location.UNKNOWN);
+    }
+
+    /**
+     * Get the messages whose kind is {@link Message.Kind#UNKNOWN}.
+     * @return the messages, or null if there are none
+     */
+    Collection<Message> getUnknownKinds() {
+        return messageKindTable.get(Message.Kind.UNKNOWN);
+    }
+
+    private static <K> void increment(Map<K, Integer> map, K k, int n) {
+        Integer i = map.get(k);
+        map.put(k, (i == null) ? n : i + n);
+    }
+
     public void read(File f) throws IOException {
-        System.err.println("read " + f);
+        log("read " + f);
         try (BufferedReader in = new BufferedReader(new FileReader(f))) {
             read(in);
         }
@@ -76,7 +421,7 @@ public final class Tables {
         String line;
         while ((line = in.readLine()) != null) {
             readLine(line);
-            if (unmatchedMessages + unmatchedLocations > 100)
+            if (unmatchedMessages + unmatchedLocations > MAX_UNMATCHED)
                 return;
         }
     }
@@ -87,50 +432,274 @@ public final class Tables {
         if (!msgs.isWarning(line))
             return;
 
-        warnings++;
-        uniqueWarnings.add(line);
-
-        Message m = msgs.getMessage(line);
+        Message m = getMessage(line);
         if (m == null) {
-            System.err.println("unmatched message: " + line);
+            log("unmatched message: " + line);
             unmatchedMessages++;
             m = new Message(Message.Kind.UNKNOWN, line);
         }
 
+        if (m.kind.hasLocation() && m.location == null) {
+            log("unmatched location: " + line);
+            unmatchedLocations++;
+        }
+
+        add(m);
+    }
+
+    /**
+     * Get the message for a line, using the cache of recently classified
+     * lines if possible. Repeated warnings are common in build logs,
+     * such as when the same header is compiled many times.
+     * @return the message, or null if the line does not match any kind
+     */
+    private Message getMessage(String line) {
+        Message m = cache.get(line);
+        if (m != null) {
+            cacheHits++;
+            return (m == NO_MESSAGE) ? null : new Message(m.kind, line, m.location);
+        }
+        cacheMisses++;
+        m = msgs.getMessage(line);
+        cache.put(line, (m == null) ? NO_MESSAGE : m);
+        return m;
+    }
+
+    /**
+     * A cache of the messages for recently classified lines, with
+     * {@link #NO_MESSAGE} for lines that do not match any kind.
+     */
+    private final Map<String, Message> cache = new LinkedHashMap<String, Message>(16, 0.75f, true) {
+        static final long serialVersionUID = 2951394235786435542L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Message> e) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static final Message NO_MESSAGE = new Message(Message.Kind.UNKNOWN, "", null);
+    private static final int CACHE_SIZE = 10000;
+
+    /**
+     * Add a message to the tables.
+     */
+    private void add(Message m) {
+        if (storage == Storage.COUNTS) {
+            addCounts(m);
+            return;
+        }
+
+        warnings++;
+        countsValid = false;
+        uniqueWarnings.add(m.line);
+        int id = (store == null) ? -1 : store.add(m);
+
         Message.Kind kind = m.kind;
-        add(messageKindTable, kind, m);
-
-        if (kind.hasLocation()) {
-            if (m.location == null) {
-                System.err.println("unmatched location: " + line);
-                unmatchedLocations++;
-            } else {
-                add(pathTable, m.location, m);
-                add(areaTable, m.location.area, m);
-            }
+        add(messageKindTable, kind, m, id);
+
+        if (kind.hasLocation() && m.location != null) {
+            add(pathTable, m.location, m, id);
+            add(areaTable, m.location.area, m, id);
+            addFingerprint(m);
+        }
+
+        add(toolTable, kind.tool, m, id);
+    }
+
+    /**
+     * Count a message in the tables of counts. The message itself is only
+     * saved if its kind or location is unknown.
+     */
+    private void addCounts(Message m) {
+        warnings++;
+        uniqueWarnings.add(m.line);
+
+        Message.Kind kind = m.kind;
+        increment(kindCounts, kind, 1);
+        if (kind == Message.Kind.UNKNOWN)
+            add(messageKindTable, kind, m, -1);
+
+        if (kind.hasLocation() && m.location != null) {
+            Message.Location l = m.location;
+            increment(locationCounts, l, 1);
+            increment(directoryCounts, l.getPathDirectory(), 1);
+            increment(extensionCounts, l.getExtension(), 1);
+            increment(areaCounts, l.area, 1);
+            if (l.compareTo(Message.Location.UNKNOWN) == 0)
+                add(pathTable, l, m, -1);
+            addFingerprint(m);
         }
 
-        add(toolTable, kind.tool, m);
+        increment(toolCounts, kind.tool, 1);
     }
 
-    <T> void add(Map<T, Collection<Message>> map, T t, Message m) {
+    /**
+     * Record the digit-free fingerprint of a message with a location,
+     * for comparison against reference tables.
+     */
+    private void addFingerprint(Message m) {
+        FingerprintCounts fc = locationFingerprints.get(m.location);
+        if (fc == null)
+            locationFingerprints.put(m.location, fc = new FingerprintCounts());
+        fc.add(UniqueCounter.fingerprintIgnoringDigits(m.line), 1);
+    }
+
+    /**
+     * Add the number of messages of a kind, such as from a snapshot,
+     * when only counts are stored.
+     */
+    void addCount(Message.Kind kind, int n) {
+        increment(kindCounts, kind, n);
+        increment(toolCounts, kind.tool, n);
+    }
+
+    /**
+     * Add the number of messages at a location, such as from a snapshot,
+     * when only counts are stored.
+     */
+    void addCount(Message.Location l, int n) {
+        increment(locationCounts, l, n);
+        increment(directoryCounts, l.getPathDirectory(), n);
+        increment(extensionCounts, l.getExtension(), n);
+        increment(areaCounts, l.area, n);
+    }
+
+    /**
+     * Add a message with an unknown kind or location, such as from a
+     * snapshot, when only counts are stored.
+     */
+    void addUnknown(Message m) {
+        if (m.kind == Message.Kind.UNKNOWN)
+            add(messageKindTable, m.kind, m, -1);
+        else
+            add(pathTable, m.location, m, -1);
+    }
+
+    /**
+     * Add a message to one of the tables. If the messages are stored
+     * in a message store, the message is represented by its id.
+     */
+    private <T> void add(Map<T, Collection<Message>> map, T t, Message m, int id) {
         Collection<Message> c = map.get(t);
-        if (c == null)
-            map.put(t, c = new HashSet<>());
-        c.add(m);
+        if (store == null) {
+            if (c == null)
+                map.put(t, c = new HashSet<>());
+            c.add(m);
+        } else {
+            if (c == null)
+                map.put(t, c = store.newSet());
+            ((MessageStore.MessageSet) c).add(id);
+        }
+    }
+
+    /**
+     * Merge the contents of another table into this one.
+     * The other table should not be used after this operation.
+     */
+    private void merge(Tables other) {
+        if (other.log != null) {
+            for (String s: other.log)
+                log(s);
+        }
+        files.addAll(other.files);
+        lines += other.lines;
+        cacheHits += other.cacheHits;
+        cacheMisses += other.cacheMisses;
+        unmatchedLocations += other.unmatchedLocations;
+        unmatchedMessages += other.unmatchedMessages;
+
+        if (store != null) {
+            // the ids in the other table are specific to its own store
+            for (int i = 0; i < other.store.size(); i++)
+                add(other.store.get(i));
+            return;
+        }
+
+        warnings += other.warnings;
+        countsValid = false;
+        uniqueWarnings.merge(other.uniqueWarnings);
+        merge(messageKindTable, other.messageKindTable);
+        merge(pathTable, other.pathTable);
+        merge(toolTable, other.toolTable);
+        merge(areaTable, other.areaTable);
+
+        for (Map.Entry<Message.Location, FingerprintCounts> e: other.locationFingerprints.entrySet()) {
+            FingerprintCounts fc = locationFingerprints.get(e.getKey());
+            if (fc == null)
+                locationFingerprints.put(e.getKey(), e.getValue());
+            else
+                fc.addAll(e.getValue());
+        }
+
+        if (storage == Storage.COUNTS) {
+            mergeCounts(kindCounts, other.kindCounts);
+            mergeCounts(locationCounts, other.locationCounts);
+            mergeCounts(directoryCounts, other.directoryCounts);
+            mergeCounts(extensionCounts, other.extensionCounts);
+            mergeCounts(toolCounts, other.toolCounts);
+            mergeCounts(areaCounts, other.areaCounts);
+        }
+    }
+
+    private <T> void mergeCounts(Map<T, Integer> map, Map<T, Integer> other) {
+        for (Map.Entry<T, Integer> e: other.entrySet())
+            increment(map, e.getKey(), e.getValue());
     }
 
+    private <T> void merge(Map<T, Collection<Message>> map, Map<T, Collection<Message>> other) {
+        for (Map.Entry<T, Collection<Message>> e: other.entrySet()) {
+            Collection<Message> c = map.get(e.getKey());
+            if (c == null)
+                map.put(e.getKey(), e.getValue());
+            else
+                c.addAll(e.getValue());
+        }
+    }
+
+    private void log(String msg) {
+        if (log == null)
+            System.err.println(msg);
+        else
+            log.add(msg);
+    }
+
+    /** The number of problems after which to stop reading a file. */
+    private static final int MAX_UNMATCHED = 100;
+
     int lines;
     int warnings;
     int unmatchedLocations;
     int unmatchedMessages;
+    int cacheHits;
+    int cacheMisses;
 
     List<File> files = new ArrayList<>();
-    Set<String> uniqueWarnings = new TreeSet<>();
+    /** The fingerprints of the distinct warning lines. */
+    final UniqueCounter uniqueWarnings;
     Map<Message.Kind, Collection<Message>> messageKindTable = new TreeMap<>();
     Map<Message.Location, Collection<Message>> pathTable = new TreeMap<>();
     Map<Tool, Collection<Message>> toolTable = new TreeMap<>();
     Map<String, Collection<Message>> areaTable = new TreeMap<>();
 
-    Messages msgs = new Messages();
+    /** The digit-free fingerprints of the messages at each location. */
+    Map<Message.Location, FingerprintCounts> locationFingerprints = new TreeMap<>();
+
+    // The number of messages for each key: these are updated as each
+    // message is added when only counts are stored, and are otherwise
+    // computed from the tables of messages when they are first needed.
+    Map<Message.Kind, Integer> kindCounts = new TreeMap<>();
+    Map<Message.Location, Integer> locationCounts = new TreeMap<>();
+    Map<String, Integer> directoryCounts = new TreeMap<>();
+    Map<String, Integer> extensionCounts = new TreeMap<>();
+    Map<Tool, Integer> toolCounts = new TreeMap<>();
+    Map<String, Integer> areaCounts = new TreeMap<>();
+    /** Whether the counts are up to date with the tables of messages. */
+    private boolean countsValid;
+
+    final Messages msgs;
+    final Storage storage;
+    /** The store for the messages, or null if each message is stored separately. */
+    final MessageStore store;
+    /** Diagnostics to be reported later, or null if they should be reported immediately. */
+    private List<String> log;
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package buildLogWarnSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static buildLogWarnSummary.Messages.*;
+
+/**
+ * Saves the results of reading a set of logs to a file, and reads them back,
+ * so that a reference set of logs need only be read once, and can then be
+ * used for any number of comparisons.
+ *
+ * Only the counts of the messages are saved, together with the fingerprints
+ * used to compare against other logs, and the messages with unknown kinds
+ * or locations, so that the tables read back are as if the logs had been
+ * read with {@link Tables.Storage#COUNTS}. The counts for tools, areas,
+ * directories and extensions are derived from those for kinds and locations.
+ *
+ * The snapshot is a binary file, written with {@link DataOutputStream}:
+ * <pre>
+ *   int    magic number, 0x424C5753 ("BLWS")
+ *   int    version, 1
+ *   int    number of files, followed by the name of each file
+ *   int    lines, warnings, unmatched locations, unmatched messages,
+ *          cache hits, cache misses
+ *   string mode for unique warnings, followed by the state of the counter
+ *   int    number of kinds, each of:
+ *     string tool name, string pattern, int count
+ *   int    number of locations, each of:
+ *     string file, string path, int count, fingerprints
+ *   int    number of messages with unknown kinds, followed by each line
+ *   int    number of messages with unknown locations, each of:
+ *     int    index of the kind, string line
+ * </pre>
+ * Strings are written as the number of bytes in their UTF-8 encoding,
+ * followed by the bytes. The file is memory-mapped when it is read.
+ */
+class TablesSnapshot {
+    static final int MAGIC = 0x424C5753;
+    static final int VERSION = 1;
+
+    /**
+     * Write a snapshot of a set of tables.
+     * @param t the tables
+     * @param file the file for the snapshot
+     * @throws IOException if an error occurs while writing the file
+     */
+    static void write(Tables t, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(t.files.size());
+            for (File f: t.files)
+                writeString(out, f.getPath());
+
+            out.writeInt(t.lines);
+            out.writeInt(t.warnings);
+            out.writeInt(t.unmatchedLocations);
+            out.writeInt(t.unmatchedMessages);
+            out.writeInt(t.cacheHits);
+            out.writeInt(t.cacheMisses);
+
+            writeString(out, t.uniqueWarnings.getMode().name());
+            t.uniqueWarnings.write(out);
+
+            Map<Message.Kind, Integer> kindCounts = t.getKindCounts();
+            Map<Message.Kind, Integer> kindIndex = new HashMap<>();
+            out.writeInt(kindCounts.size());
+            for (Map.Entry<Message.Kind, Integer> e: kindCounts.entrySet()) {
+                Message.Kind k = e.getKey();
+                kindIndex.put(k, kindIndex.size());
+                writeString(out, k.tool.name);
+                writeString(out, k.msgPattern.pattern());
+                out.writeInt(e.getValue());
+            }
+
+            Map<Message.Location, Integer> locationCounts = t.getLocationCounts();
+            out.writeInt(locationCounts.size());
+            for (Map.Entry<Message.Location, Integer> e: locationCounts.entrySet()) {
+                Message.Location l = e.getKey();
+                writeString(out, l.file);
+                writeString(out, l.path);
+                out.writeInt(e.getValue());
+                FingerprintCounts fc = t.locationFingerprints.get(l);
+                (fc == null ? new FingerprintCounts() : fc).write(out);
+            }
+
+            Collection<Message> unknownKinds = t.getUnknownKinds();
+            if (unknownKinds == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(unknownKinds.size());
+                for (Message m: unknownKinds)
+                    writeString(out, m.line);
+            }
+
+            Collection<Message> unknownLocations = t.getUnknownLocations();
+            if (unknownLocations == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(unknownLocations.size());
+                for (Message m: unknownLocations) {
+                    out.writeInt(kindIndex.get(m.kind));
+                    writeString(out, m.line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a snapshot of a set of tables.
+     * @param file the file containing the snapshot
+     * @param msgs the messages for the tables
+     * @return the tables
+     * @throws IOException if an error occurs while reading the file, or if
+     *      the file is not a valid snapshot for the current set of messages
+     */
+    static Tables read(File file, Messages msgs) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return read(file, in, msgs);
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("bad snapshot: " + file, e);
+        }
+    }
+
+    private static Tables read(File file, ByteBuffer in, Messages msgs) throws IOException {
+        if (in.getInt() != MAGIC)
+            throw new IOException("not a snapshot: " + file);
+        int version = in.getInt();
+        if (version != VERSION)
+            throw new IOException("unsupported snapshot version " + version + ": " + file);
+
+        List<File> files = new ArrayList<>();
+        int nFiles = in.getInt();
+        for (int i = 0; i < nFiles; i++)
+            files.add(new File(readString(in)));
+
+        int lines = in.getInt();
+        int warnings = in.getInt();
+        int unmatchedLocations = in.getInt();
+        int unmatchedMessages = in.getInt();
+        int cacheHits = in.getInt();
+        int cacheMisses = in.getInt();
+
+        UniqueCounter.Mode mode = UniqueCounter.Mode.valueOf(readString(in));
+        Tables t = new Tables(msgs, Tables.Storage.COUNTS, mode);
+        t.uniqueWarnings.read(in);
+        t.files.addAll(files);
+        t.lines = lines;
+        t.warnings = warnings;
+        t.unmatchedLocations = unmatchedLocations;
+        t.unmatchedMessages = unmatchedMessages;
+        t.cacheHits = cacheHits;
+        t.cacheMisses = cacheMisses;
+
+        Map<String, Message.Kind> allKinds = new HashMap<>();
+        allKinds.put(getKey(Message.Kind.UNKNOWN), Message.Kind.UNKNOWN);
+        for (Tool tool: tools) {
+            for (Message.Kind k: tool.kinds)
+                allKinds.put(getKey(k), k);
+        }
+
+        // each kind is two strings and a count
+        int nKinds = readCount(in, 12);
+        Message.Kind[] kinds = new Message.Kind[nKinds];
+        for (int i = 0; i < nKinds; i++) {
+            String toolName = readString(in);
+            String pattern = readString(in);
+            Message.Kind k = allKinds.get(getKey(toolName, pattern));
+            if (k == null)
+                throw new IOException("snapshot contains a kind of warning that is no longer recognized: "
+                        + file + ": " + toolName + ": " + pattern);
+            kinds[i] = k;
+            t.addCount(k, in.getInt());
+        }
+
+        int nLocations = in.getInt();
+        for (int i = 0; i < nLocations; i++) {
+            String f = readString(in);
+            String path = readString(in);
+            Message.Location l = new Message.Location(f, path);
+            t.addCount(l, in.getInt());
+            t.locationFingerprints.put(l, FingerprintCounts.read(in));
+        }
+
+        int nUnknownKinds = in.getInt();
+        for (int i = 0; i < nUnknownKinds; i++)
+            t.addUnknown(new Message(Message.Kind.UNKNOWN, readString(in), null));
+
+        int nUnknownLocations = in.getInt();
+        for (int i = 0; i < nUnknownLocations; i++) {
+            Message.Kind k = kinds[in.getInt()];
+            t.addUnknown(new Message(k, readString(in), Message.Location.UNKNOWN));
+        }
+
+        return t;
+    }
+
+    private static String getKey(Message.Kind k) {
+        return getKey(k.tool.name, k.msgPattern.pattern());
+    }
+
+    private static String getKey(String toolName, String pattern) {
+        return toolName + "\0" + pattern;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readCount(in, 1)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the number of items that follow in a buffer, checking that
+     * there is room in the rest of the buffer for that many items, so
+     * that a damaged snapshot cannot cause a large allocation.
+     * @param in the buffer
+     * @param itemSize the minimum number of bytes for each item
+     * @return the number of items
+     * @throws BufferUnderflowException if the number is negative, or if
+     *      there are not enough bytes remaining for that many items
+     */
+    static int readCount(ByteBuffer in, int itemSize) {
+        int n = in.getInt();
+        if (n < 0 || (long) n * itemSize > in.remaining())
+            throw new BufferUnderflowException();
+        return n;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package buildLogWarnSummary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Counts the number of distinct strings, such as the lines of the
+ * warnings in a log, without keeping the strings themselves.
+ *
+ * Each string is reduced to a 64-bit fingerprint. The exact counter keeps
+ * the fingerprints in a hash set of longs; with 64-bit fingerprints, the
+ * chance of two distinct lines having the same fingerprint is negligible
+ * for any realistic log. The estimating counter uses a HyperLogLog sketch,
+ * which uses a small fixed amount of memory, however many strings are
+ * added, and gives a count with a typical error of about 1%.
+ */
+abstract class UniqueCounter {
+    /** The ways in which the distinct strings may be counted. */
+    enum Mode {
+        /** Count the distinct fingerprints exactly. */
+        EXACT("exact"),
+        /** Estimate the number of distinct fingerprints. */
+        ESTIMATE("estimated");
+
+        Mode(String description) {
+            this.description = description;
+        }
+
+        /** A description of the mode, for use in reports. */
+        final String description;
+    }
+
+    /**
+     * Create a counter.
+     * @param mode the way in which to count the strings
+     * @return the counter
+     */
+    static UniqueCounter create(Mode mode) {
+        switch (mode) {
+            case EXACT:
+                return new Exact();
+            case ESTIMATE:
+                return new Estimate();
+            default:
+                throw new IllegalArgumentException(mode.toString());
+        }
+    }
+
+    /**
+     * Add a string to the counter.
+     * @param s the string
+     */
+    void add(String s) {
+        add(fingerprint(s));
+    }
+
+    abstract void add(long fingerprint);
+
+    /**
+     * Add all the strings that have been added to another counter of the
+     * same mode into this one.
+     * @param other the other counter
+     */
+    abstract void merge(UniqueCounter other);
+
+    /**
+     * Get the number of distinct strings that have been added.
+     * @return the number
+     */
+    abstract long count();
+
+    /**
+     * Get the way in which this counter counts strings.
+     * @return the mode
+     */
+    abstract Mode getMode();
+
+    /**
+     * Write the state of this counter, so that it can be read back by
+     * {@link #read}.
+     * @param out the stream to which to write the state
+     * @throws IOException if an error occurs while writing the state
+     */
+    abstract void write(DataOutputStream out) throws IOException;
+
+    /**
+     * Read the state written by {@link #write} into this counter, which
+     * should be empty, and of the same mode as the counter that was written.
+     * @param in the buffer from which to read the state
+     */
+    abstract void read(ByteBuffer in);
+
+    /**
+     * Compute a 64-bit fingerprint for a string, using the 64-bit FNV-1a
+     * hash of its chars, followed by the finalization step of MurmurHash3
+     * to distribute the bits.
+     */
+    static long fingerprint(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Compute a 64-bit fingerprint for a string, as for {@link #fingerprint},
+     * ignoring any ASCII digits, such as those in line and column numbers,
+     * so that the same warning at different positions in a file has the
+     * same fingerprint.
+     */
+    static long fingerprintIgnoringDigits(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9')
+                continue;
+            h ^= c;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * An exact counter, using an open-addressed hash set of fingerprints.
+     * Since 0 is used to mark empty slots, it is recorded separately.
+     */
+    static class Exact extends UniqueCounter {
+        @Override
+        void add(long fp) {
+            if (fp == 0) {
+                hasZero = true;
+                return;
+            }
+            int mask = table.length - 1;
+            int i = (int) (fp ^ (fp >>> 32)) & mask;
+            long t;
+            while ((t = table[i]) != 0) {
+                if (t == fp)
+                    return;
+                i = (i + 1) & mask;
+            }
+            table[i] = fp;
+            if (++size > table.length / 2)
+                resize();
+        }
+
+        @Override
+        void merge(UniqueCounter other) {
+            Exact e = (Exact) other;
+            for (long fp: e.table) {
+                if (fp != 0)
+                    add(fp);
+            }
+            hasZero |= e.hasZero;
+        }
+
+        @Override
+        long count() {
+            return size + (hasZero ? 1 : 0);
+        }
+
+        @Override
+        Mode getMode() {
+            return Mode.EXACT;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(hasZero);
+            out.writeInt(size);
+            for (long fp: table) {
+                if (fp != 0)
+                    out.writeLong(fp);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer in) {
+            hasZero = (in.get() != 0);
+            int n = TablesSnapshot.readCount(in, 8);
+            for (int i = 0; i < n; i++)
+                add(in.getLong());
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for (long fp: old) {
+                if (fp != 0)
+                    add(fp);
+            }
+        }
+
+        private long[] table = new long[1024];
+        private int size;
+        private boolean hasZero;
+    }
+
+    /**
+     * An estimating counter, using a HyperLogLog sketch with 2^14 registers.
+     * The top bits of each fingerprint select a register, which records the
+     * largest number of leading zeros, plus one, seen in the remaining bits.
+     */
+    static class Estimate extends UniqueCounter {
+        @Override
+        void add(long fp) {
+            int i = (int) (fp >>> (64 - P));
+            byte r = (byte) (Long.numberOfLeadingZeros((fp << P) | (1L << (P - 1))) + 1);
+            if (r > registers[i])
+                registers[i] = r;
+        }
+
+        @Override
+        void merge(UniqueCounter other) {
+            byte[] o = ((Estimate) other).registers;
+            for (int i = 0; i < M; i++) {
+                if (o[i] > registers[i])
+                    registers[i] = o[i];
+            }
+        }
+
+        @Override
+        long count() {
+            double sum = 0;
+            int zeros = 0;
+            for (byte r: registers) {
+                sum += 1.0 / (1L << r);
+                if (r == 0)
+                    zeros++;
+            }
+            double alpha = 0.7213 / (1 + 1.079 / M);
+            double e = alpha * M * M / sum;
+            // use linear counting for small cardinalities
+            if (e <= 2.5 * M && zeros > 0)
+                e = M * Math.log((double) M / zeros);
+            return Math.round(e);
+        }
+
+        @Override
+        Mode getMode() {
+            return Mode.ESTIMATE;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.write(registers);
+        }
+
+        @Override
+        void read(ByteBuffer in) {
+            in.get(registers);
+        }
+
+        private static final int P = 14;
+        private static final int M = 1 << P;
+        private final byte[] registers = new byte[M];
+    }
+}
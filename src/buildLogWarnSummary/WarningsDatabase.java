@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package buildLogWarnSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static buildLogWarnSummary.Messages.*;
+
+/**
+ * A database of the warning counts for a series of builds, so that trends
+ * can be reported without reading the logs for earlier builds again.
+ *
+ * The database is a directory containing two files. The data file,
+ * {@code warnings.db}, is only ever appended to; after a header of a magic
+ * number, 0x424C5744 ("BLWD"), and a version, it contains a record for each
+ * build, written as the number of bytes in the record, followed by:
+ * <pre>
+ *   UTF    build id
+ *   long   time the record was added, in milliseconds
+ *   int    number of warnings
+ *   4 tables, for kinds, locations, areas and tools, each of:
+ *     int    number of entries, each of:
+ *       UTF    key
+ *       int    count
+ * </pre>
+ * The index file, {@code warnings.idx}, after a header of a magic number,
+ * 0x424C5758 ("BLWX"), and a version, contains the build id and the offset
+ * of each record in the data file, in the order the records were added.
+ * If the index is missing any records, such as if a previous run was
+ * interrupted, it is brought up to date from the data file when the
+ * database is opened.
+ *
+ * While a database is open, it holds an exclusive lock on the data file,
+ * so that runs sharing the same database cannot interleave their updates
+ * to either file. The database must be closed to release the lock.
+ */
+class WarningsDatabase implements Closeable {
+    static final int DATA_MAGIC = 0x424C5744;
+    static final int INDEX_MAGIC = 0x424C5758;
+    static final int VERSION = 1;
+    /** The size of the header of each file. */
+    static final int HEADER_SIZE = 8;
+
+    /** The warning counts for a build. */
+    static class Record {
+        Record(String id, long time, int warnings) {
+            this.id = id;
+            this.time = time;
+            this.warnings = warnings;
+        }
+
+        /**
+         * Create a record for the warnings in a set of tables.
+         * @param id the id of the build
+         * @param t the tables
+         * @return the record
+         */
+        static Record of(String id, Tables t) {
+            Record r = new Record(id, System.currentTimeMillis(), t.warnings);
+            for (Map.Entry<Message.Kind, Integer> e: t.getKindCounts().entrySet())
+                r.kinds.put(e.getKey().tool + ": " + e.getKey(), e.getValue());
+            for (Map.Entry<Message.Location, Integer> e: t.getLocationCounts().entrySet())
+                r.locations.put(e.getKey().path, e.getValue());
+            r.areas.putAll(t.getAreaCounts());
+            for (Map.Entry<Tool, Integer> e: t.getToolCounts().entrySet())
+                r.tools.put(e.getKey().name, e.getValue());
+            return r;
+        }
+
+        final String id;
+        final long time;
+        final int warnings;
+        final Map<String, Integer> kinds = new TreeMap<>();
+        final Map<String, Integer> locations = new TreeMap<>();
+        final Map<String, Integer> areas = new TreeMap<>();
+        final Map<String, Integer> tools = new TreeMap<>();
+    }
+
+    /**
+     * Open a database, creating it if necessary. This waits until any
+     * other process using the same database has closed it.
+     * @param dir the directory for the database
+     * @throws IOException if the database cannot be opened
+     */
+    WarningsDatabase(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("cannot create directory " + dir);
+        dataFile = new File(dir, "warnings.db");
+        indexFile = new File(dir, "warnings.idx");
+        data = new RandomAccessFile(dataFile, "rw");
+        try {
+            lock = data.getChannel().lock();
+            readIndex();
+            recover();
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the database, releasing the lock on the data file.
+     * @throws IOException if an error occurs while closing the database
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Get the ids of the builds in the database, in the order they were added.
+     * @return the ids
+     */
+    List<String> getBuilds() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Check whether the database contains a record for a build.
+     * @param id the id of the build
+     * @return true if and only if there is a record for the build
+     */
+    boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * Read the record for a build.
+     * @param id the id of the build
+     * @return the record, or null if there is no record for the build
+     * @throws IOException if an error occurs while reading the record
+     */
+    Record read(String id) throws IOException {
+        Long offset = index.get(id);
+        if (offset == null)
+            return null;
+        byte[] bytes = new byte[readRecordSize(offset)];
+        data.readFully(bytes);
+        return decode(bytes);
+    }
+
+    /**
+     * Read the records for the most recent builds, in the order they were added.
+     * @param n the maximum number of records to read
+     * @return the records
+     * @throws IOException if an error occurs while reading the records
+     */
+    List<Record> readRecent(int n) throws IOException {
+        List<String> builds = getBuilds();
+        List<Record> records = new ArrayList<>();
+        for (String id: builds.subList(Math.max(0, builds.size() - n), builds.size()))
+            records.add(read(id));
+        return records;
+    }
+
+    /**
+     * Add a record to the database.
+     * @param r the record
+     * @throws IOException if an error occurs while writing the record
+     * @throws IllegalArgumentException if there is already a record for the build
+     */
+    void append(Record r) throws IOException {
+        if (contains(r.id))
+            throw new IllegalArgumentException("build already recorded: " + r.id);
+
+        byte[] bytes = encode(r);
+        if (dataEnd == 0) {
+            data.seek(0);
+            data.writeInt(DATA_MAGIC);
+            data.writeInt(VERSION);
+            dataEnd = HEADER_SIZE;
+        }
+        // discard any incomplete record left by an earlier run
+        data.setLength(dataEnd);
+        data.seek(dataEnd);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        data.getFD().sync();
+        long offset = dataEnd;
+        dataEnd += 4 + bytes.length;
+        appendIndex(r.id, offset);
+    }
+
+    private void readIndex() throws IOException {
+        if (!indexFile.exists())
+            return;
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            if (raf.length() < HEADER_SIZE)
+                return;
+            checkHeader(raf.readInt(), raf.readInt(), INDEX_MAGIC, indexFile);
+            long length = raf.length();
+            long end = HEADER_SIZE;
+            try {
+                while (end < length) {
+                    String id = raf.readUTF();
+                    index.put(id, raf.readLong());
+                    end = raf.getFilePointer();
+                }
+            } catch (EOFException | UTFDataFormatException e) {
+                // discard an incomplete entry left by an earlier run;
+                // it will be recovered from the data file
+                raf.setLength(end);
+            }
+        }
+    }
+
+    /**
+     * Determine the end of the last complete record in the data file, and
+     * add entries to the index for any records that are not yet in it.
+     */
+    private void recover() throws IOException {
+        long length = data.length();
+        if (length < HEADER_SIZE) {
+            if (!index.isEmpty())
+                throw corrupt();
+            return;
+        }
+        data.seek(0);
+        checkHeader(data.readInt(), data.readInt(), DATA_MAGIC, dataFile);
+
+        long pos = HEADER_SIZE;
+        if (!index.isEmpty()) {
+            long last = 0;
+            for (long offset: index.values())
+                last = Math.max(last, offset);
+            pos = last + 4 + readRecordSize(last);
+        }
+
+        Map<String, Long> missing = new LinkedHashMap<>();
+        while (pos + 4 <= length) {
+            data.seek(pos);
+            int size = data.readInt();
+            if (size < 0 || pos + 4 + size > length)
+                break;
+            String id = data.readUTF();
+            missing.put(id, pos);
+            pos += 4 + size;
+        }
+        dataEnd = pos;
+
+        for (Map.Entry<String, Long> e: missing.entrySet())
+            appendIndex(e.getKey(), e.getValue());
+    }
+
+    private void appendIndex(String id, long offset) throws IOException {
+        boolean isNew = !indexFile.exists() || indexFile.length() < HEADER_SIZE;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile, !isNew)))) {
+            if (isNew) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(VERSION);
+                for (Map.Entry<String, Long> e: index.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue());
+                }
+            }
+            out.writeUTF(id);
+            out.writeLong(offset);
+        }
+        index.put(id, offset);
+    }
+
+    /**
+     * Read the size of the record at a given offset in the data file,
+     * checking that the whole record is within the file. On return, the
+     * file is positioned at the start of the record's content.
+     */
+    private int readRecordSize(long offset) throws IOException {
+        long length = data.length();
+        if (offset < HEADER_SIZE || offset + 4 > length)
+            throw corrupt();
+        data.seek(offset);
+        int size = data.readInt();
+        if (size < 0 || offset + 4 + size > length)
+            throw corrupt();
+        return size;
+    }
+
+    private IOException corrupt() {
+        return new IOException("corrupt warnings database: " + dataFile);
+    }
+
+    private static void checkHeader(int magic, int version, int expectMagic, File file)
+            throws IOException {
+        if (magic != expectMagic)
+            throw new IOException("not a warnings database file: " + file);
+        if (version != VERSION)
+            throw new IOException("unsupported warnings database version " + version + ": " + file);
+    }
+
+    private static byte[] encode(Record r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(r.id);
+            out.writeLong(r.time);
+            out.writeInt(r.warnings);
+            encode(out, r.kinds);
+            encode(out, r.locations);
+            encode(out, r.areas);
+            encode(out, r.tools);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void encode(DataOutputStream out, Map<String, Integer> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Integer> e: map.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+    }
+
+    private static Record decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            Record r = new Record(in.readUTF(), in.readLong(), in.readInt());
+            decode(in, r.kinds);
+            decode(in, r.locations);
+            decode(in, r.areas);
+            decode(in, r.tools);
+            return r;
+        }
+    }
+
+    private static void decode(DataInputStream in, Map<String, Integer> map) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            map.put(key, in.readInt());
+        }
+    }
+
+    private final File dataFile;
+    private final File indexFile;
+    /** The data file, open for as long as the database is open. */
+    private final RandomAccessFile data;
+    /** The lock on the data file, held for as long as the database is open. */
+    private final FileLock lock;
+    /** The offset of the record for each build, in the order they were added. */
+    private final Map<String, Long> index = new LinkedHashMap<>();
+    /** The position after the last complete record in the data file. */
+    private long dataEnd;
+}